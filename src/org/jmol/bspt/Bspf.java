@@ -35,6 +35,16 @@ import javajs.util.BS;
  *<p>
  * This is simply an array of Binary Space Partitioning Trees identified
  * by indexes
+ *<p>
+ * Tuples are staged as they are added, and the index is only built on
+ * first use. At that point a large, densely packed set of tuples (a protein,
+ * a solvent box) gets a CellList instead of a Bspt; the CellList builds in
+ * one pass.
+ *<p>
+ * When tuples have only moved, moveModel() marks the index, and 
+ * updateIndex() then brings it up to date in place -- relinking just the
+ * moved tuples of a CellList, or refitting the node bounds of a Bspt --
+ * rather than rebuilding it.
  *
  * @author Miguel, miguel@jmol.org
 */
@@ -45,14 +55,40 @@ public final class Bspf {
   public Bspt[] bspts;
   public boolean isValid = false;
   boolean[] bsptsValid;
+  boolean[] bsptsMoved;
   
+  /**
+   * staged tuples for each index not yet built, 
+   * and the index itself when it has been built as a cell list
+   */
+  CellList[] cellLists;
+
+  /**
+   * Bspts built from the tuples of a cell list, for callers that depend on
+   * the order in which a Bspt returns its points
+   */
+  Bspt[] orderedBspts;
+
   public void validateModel(int i, boolean isValid) {
     bsptsValid[i] = isValid;
+    bsptsMoved[i] = false;
+  }
+
+  /**
+   * Note that some tuples of this index have changed position, but none has
+   * been added or removed.
+   * 
+   * @param i
+   */
+  public void moveModel(int i) {
+    if (i < bsptsMoved.length)
+      bsptsMoved[i] = true;
   }
 
   public boolean isInitializedIndex(int bsptIndex) {
-    return bspts.length > bsptIndex && bspts[bsptIndex] != null
-        && bsptsValid[bsptIndex];
+    return bspts.length > bsptIndex
+        && (bspts[bsptIndex] != null || cellLists[bsptIndex] != null)
+        && bsptsValid[bsptIndex] && !bsptsMoved[bsptIndex];
   }
   
   CubeIterator[] cubeIterators;
@@ -61,19 +97,90 @@ public final class Bspf {
     this.dimMax = dimMax;
     bspts = new Bspt[1];
     bsptsValid = new boolean[1];
+    bsptsMoved = new boolean[1];
+    cellLists = new CellList[1];
+    orderedBspts = new Bspt[1];
     cubeIterators = new CubeIterator[0];
   }
 
   public void addTuple(int bsptIndex, P3d tuple) {
-    if (bsptIndex >= bspts.length) {
-      bspts = (Bspt[]) AU.arrayCopyObject(bspts, bsptIndex + 1);
-      bsptsValid = AU.arrayCopyBool(bsptsValid, bsptIndex + 1);
-    }
+    if (bsptIndex >= bspts.length)
+      ensureIndex(bsptIndex);
     Bspt bspt = bspts[bsptIndex];
-    if (bspt == null) {
-      bspt = bspts[bsptIndex] = new Bspt(dimMax, bsptIndex);
+    if (bspt != null) {
+      bspt.addTuple(tuple);
+      return;
     }
-    bspt.addTuple(tuple);
+    CellList cl = cellLists[bsptIndex];
+    if (cl == null)
+      cl = cellLists[bsptIndex] = new CellList(bsptIndex);
+    cl.addTuple(tuple);
+    orderedBspts[bsptIndex] = null;
+  }
+
+  private void ensureIndex(int bsptIndex) {
+    bspts = (Bspt[]) AU.arrayCopyObject(bspts, bsptIndex + 1);
+    bsptsValid = AU.arrayCopyBool(bsptsValid, bsptIndex + 1);
+    bsptsMoved = AU.arrayCopyBool(bsptsMoved, bsptIndex + 1);
+    cellLists = (CellList[]) AU.arrayCopyObject(cellLists, bsptIndex + 1);
+    orderedBspts = (Bspt[]) AU.arrayCopyObject(orderedBspts, bsptIndex + 1);
+  }
+
+  /**
+   * Build the index from its staged tuples if that has not been done yet. 
+   * Synchronized so that parallel tasks can share one Bspf.
+   * 
+   * @param bsptIndex
+   * @return true if the index exists
+   */
+  private synchronized boolean buildIndex(int bsptIndex) {
+    if (bsptIndex >= bspts.length)
+      return false;
+    if (bspts[bsptIndex] != null)
+      return true;
+    CellList cl = cellLists[bsptIndex];
+    if (cl == null)
+      return false;
+    if (cl.isSet)
+      return true;
+    if (bsptIndex < cubeIterators.length)
+      cubeIterators[bsptIndex] = null;
+    if (dimMax == 3 && cl.isDense()) {
+      cl.build();
+      return true;
+    }
+    Bspt bspt = bspts[bsptIndex] = new Bspt(dimMax, bsptIndex);
+    for (int i = 0, n = cl.count; i < n; i++)
+      bspt.addTuple(cl.tuples[i]);
+    cellLists[bsptIndex] = null;
+    return true;
+  }
+
+  /**
+   * Bring a valid index up to date after some of its tuples have moved, if
+   * that can be done in place.
+   * 
+   * @param bsptIndex
+   * @return false if the index must be rebuilt instead
+   */
+  public synchronized boolean updateIndex(int bsptIndex) {
+    if (bsptIndex >= bspts.length || !bsptsValid[bsptIndex])
+      return false;
+    CellList cl = cellLists[bsptIndex];
+    boolean isOK;
+    if (cl != null) {
+      // a list that has not been built yet will be built from the new positions
+      cl.update();
+      Bspt bspt = orderedBspts[bsptIndex];
+      if (bspt != null && !bspt.refit())
+        orderedBspts[bsptIndex] = null;
+      isOK = true;
+    } else {
+      isOK = (bspts[bsptIndex] != null && bspts[bsptIndex].refit());
+    }
+    if (isOK)
+      bsptsMoved[bsptIndex] = false;
+    return isOK;
   }
 
   public void stats() {
@@ -100,25 +207,61 @@ public final class Bspf {
   public CubeIterator getCubeIterator(int bsptIndex) {
     if (bsptIndex < 0)
       return getNewCubeIterator(-1 - bsptIndex);
+    if (!buildIndex(bsptIndex))
+      return null;
     if (bsptIndex >= cubeIterators.length)
       cubeIterators = (CubeIterator[]) AU.arrayCopyObject(cubeIterators,
           bsptIndex + 1);
-    if (cubeIterators[bsptIndex] == null && bspts[bsptIndex] != null)
-      cubeIterators[bsptIndex] = getNewCubeIterator(bsptIndex);
-    cubeIterators[bsptIndex].set(bspts[bsptIndex]);
-    return cubeIterators[bsptIndex];
+    CubeIterator iter = cubeIterators[bsptIndex];
+    if (iter == null)
+      iter = cubeIterators[bsptIndex] = getNewCubeIterator(bsptIndex);
+    else if (bspts[bsptIndex] != null)
+      iter.set(bspts[bsptIndex]);
+    return iter;
   }
 
   public CubeIterator getNewCubeIterator(int bsptIndex) {
-      return bspts[bsptIndex].allocateCubeIterator();
+    return (!buildIndex(bsptIndex) ? null : bspts[bsptIndex] == null
+        ? cellLists[bsptIndex].allocateCubeIterator()
+        : bspts[bsptIndex].allocateCubeIterator());
+  }
+
+  /**
+   * A new CubeIterator that returns points in the same order as a Bspt would,
+   * even if this index is a cell list. Autobonding needs that, since bonds are
+   * numbered in the order in which they are found.
+   * 
+   * @param bsptIndex
+   *        a model index, or -1 - modelIndex
+   * @return a new CubeIterator, or null
+   */
+  public synchronized CubeIterator getNewBsptCubeIterator(int bsptIndex) {
+    if (bsptIndex < 0)
+      bsptIndex = -1 - bsptIndex;
+    if (!buildIndex(bsptIndex))
+      return null;
+    Bspt bspt = bspts[bsptIndex];
+    if (bspt == null && (bspt = orderedBspts[bsptIndex]) == null) {
+      CellList cl = cellLists[bsptIndex];
+      bspt = orderedBspts[bsptIndex] = new Bspt(dimMax, bsptIndex);
+      for (int i = 0, n = cl.count; i < n; i++)
+        bspt.addTuple(cl.tuples[i]);
+    }
+    return bspt.allocateCubeIterator();
   }
 
   public synchronized void initialize(int modelIndex, P3d[] atoms, BS modelAtomBitSet) {
-    if (bspts[modelIndex] != null)
-      bspts[modelIndex].reset();
+    if (modelIndex >= bspts.length)
+      ensureIndex(modelIndex);
+    // staged again, so that the choice of index can change
+    bspts[modelIndex] = null;
+    orderedBspts[modelIndex] = null;
+    if (cellLists[modelIndex] != null)
+      cellLists[modelIndex].reset();
     for (int i = modelAtomBitSet.nextSetBit(0); i >= 0; i = modelAtomBitSet.nextSetBit(i + 1))
       addTuple(modelIndex, atoms[i]);
     bsptsValid[modelIndex] = true;
+    bsptsMoved[modelIndex] = false;
   }
 
 }
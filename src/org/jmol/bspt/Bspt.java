@@ -83,6 +83,9 @@ public final class Bspt {
   int dimMax;
   int index;
   Element eleRoot;
+  
+  int nNodes, nOverlapping;
+  private double[][] bounds;
 
   /**
    * Create a bspt with the specified number of dimensions. For a 3-dimensional
@@ -111,6 +114,23 @@ public final class Bspt {
     eleRoot = eleRoot.addTuple(0, tuple);
   }
 
+  /**
+   * Reset the bounds of every node from the current tuple positions after
+   * some of them have moved. The shape of the tree is kept, so this is a
+   * single pass with no allocation, and searches are still exact, because
+   * they depend only on these bounds.
+   * 
+   * @return false if so many nodes now have overlapping halves that the tree
+   *         should be rebuilt instead
+   */
+  public boolean refit() {
+    if (bounds == null || bounds.length <= treeDepth)
+      bounds = new double[treeDepth + 1][6];
+    nNodes = nOverlapping = 0;
+    eleRoot.refit(bounds, 0);
+    return (nOverlapping * 4 <= nNodes);
+  }
+
   /**
    * prints some simple stats to stdout
    */
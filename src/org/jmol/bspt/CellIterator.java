@@ -0,0 +1,132 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ *
+ * Copyright (C) 2003-2005  Miguel, Jmol Development, www.jmol.org
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.bspt;
+
+import javajs.util.T3d;
+
+/**
+ * A CubeIterator over a CellList rather than a Bspt. It returns exactly the
+ * same points (all within a box or a hemi-box), though not in the same order.
+ *<p>
+ * Obtain a CellIterator by calling CellList.allocateCubeIterator().
+ *
+ */
+class CellIterator extends CubeIterator {
+
+  private CellList cl;
+
+  private double radius;
+  private double cx, cy, cz;
+  private double dx, dy, dz;
+  private boolean tHemisphere;
+
+  private int ix0, ix1, iy0, iy1, iz0, iz1;
+  private int ix, iy, iz;
+
+  /**
+   * current tuple index, or -1 at the end of a cell
+   */
+  private int pt;
+
+  CellIterator(CellList cl) {
+    this.cl = cl;
+  }
+
+  @Override
+  public void initialize(T3d center, double radius, boolean hemisphereOnly) {
+    this.radius = radius;
+    tHemisphere = hemisphereOnly;
+    cx = center.x;
+    cy = center.y;
+    cz = center.z;
+    ix0 = cl.getX(hemisphereOnly ? cx : cx - radius);
+    ix1 = cl.getX(cx + radius);
+    iy0 = cl.getY(cy - radius);
+    iy1 = cl.getY(cy + radius);
+    iz0 = cl.getZ(cz - radius);
+    iz1 = cl.getZ(cz + radius);
+    ix = ix0;
+    iy = iy0;
+    iz = iz0 - 1;
+    pt = -1;
+  }
+
+  @Override
+  public void release() {
+    pt = -1;
+    ix = ix1;
+    iy = iy1;
+    iz = iz1;
+  }
+
+  @Override
+  public boolean hasMoreElements() {
+    T3d[] tuples = cl.tuples;
+    int[] next = cl.next;
+    while (true) {
+      for (; pt >= 0; pt = next[pt])
+        if (isWithinRadius(tuples[pt]))
+          return true;
+      if (!nextCell())
+        return false;
+    }
+  }
+
+  @Override
+  public T3d nextElement() {
+    T3d t = cl.tuples[pt];
+    pt = cl.next[pt];
+    return t;
+  }
+
+  @Override
+  public double foundDistance2() {
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  private boolean nextCell() {
+    if (++iz > iz1) {
+      iz = iz0;
+      if (++iy > iy1) {
+        iy = iy0;
+        if (++ix > ix1)
+          return false;
+      }
+    }
+    pt = cl.head[(ix * cl.ny + iy) * cl.nz + iz];
+    return true;
+  }
+
+  /**
+   * the same box-based test as CubeIterator
+   *
+   * @param t
+   * @return boolean
+   */
+  private boolean isWithinRadius(T3d t) {
+    dx = t.x - cx;
+    return ((!tHemisphere || dx >= 0) && (dx = Math.abs(dx)) <= radius
+        && (dy = Math.abs(t.y - cy)) <= radius
+        && (dz = Math.abs(t.z - cz)) <= radius);
+  }
+
+}
@@ -0,0 +1,255 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ *
+ * Copyright (C) 2003-2005  Miguel, Jmol Development, www.jmol.org
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.bspt;
+
+import javajs.util.AU;
+import javajs.util.T3d;
+
+/**
+ *<p>
+ * A uniform grid ("cell list") of three-dimensional points, used by Bspf in
+ * place of a Bspt for large, condensed models such as proteins and solvent
+ * boxes.
+ *</p>
+ *<p>
+ * Each point is kept in a doubly-linked list for the cell it falls in, so
+ * building is a single O(n) pass, and a point that has moved can be unlinked
+ * from its old cell and relinked into its new one without touching any other
+ * point. Points that wander outside the original bounding box are kept in the
+ * nearest edge cell; since the query range is clamped the same way, they are
+ * still found, and the grid is simply rebuilt if too many of them do that.
+ *</p>
+ *<p>
+ * The tuples are held by reference, as for Bspt, so after coordinates change
+ * a call to update() is all that is needed to make the grid valid again.
+ *</p>
+ *
+ */
+public final class CellList {
+
+  /**
+   * fewer points than this, and a Bspt is just as fast
+   */
+  final static int MIN_TUPLES = 2000;
+
+  /**
+   * mean point-to-point spacing beyond which the grid would be mostly empty
+   */
+  final static double MAX_SPACING = 4.0;
+
+  final static int TUPLES_PER_CELL = 4;
+  final static double MIN_CELL_SIZE = 2.0;
+
+  int index;
+  T3d[] tuples;
+  int count;
+
+  /**
+   * set when the grid has been built
+   */
+  boolean isSet;
+
+  private double x0, y0, z0;
+  private double x1, y1, z1;
+  private double rCell;
+  int nx, ny, nz;
+
+  /**
+   * first tuple of each cell, or -1
+   */
+  int[] head;
+
+  /**
+   * next tuple in the same cell, or -1
+   */
+  int[] next;
+  private int[] prev;
+  private int[] cells;
+  private int nOutside;
+
+  CellList(int index) {
+    this.index = index;
+    tuples = new T3d[16];
+  }
+
+  void reset() {
+    count = 0;
+    isSet = false;
+    head = next = prev = cells = null;
+  }
+
+  void addTuple(T3d tuple) {
+    if (count == tuples.length)
+      tuples = (T3d[]) AU.doubleLength(tuples);
+    tuples[count++] = tuple;
+    if (!isSet)
+      return;
+    if (count > next.length) {
+      next = AU.doubleLengthI(next);
+      prev = AU.doubleLengthI(prev);
+      cells = AU.doubleLengthI(cells);
+    }
+    link(count - 1);
+  }
+
+  /**
+   * Check that there are enough points and that they are packed densely
+   * enough for a grid to be worthwhile. Sets the bounding box.
+   *
+   * @return true if this list should be used rather than a Bspt
+   */
+  boolean isDense() {
+    if (count < MIN_TUPLES)
+      return false;
+    setBounds();
+    double spacing = Math.cbrt(getVolume() / count);
+    return (spacing <= MAX_SPACING);
+  }
+
+  private void setBounds() {
+    x0 = y0 = z0 = Double.MAX_VALUE;
+    x1 = y1 = z1 = -Double.MAX_VALUE;
+    for (int i = count; --i >= 0;) {
+      T3d t = tuples[i];
+      if (t.x < x0)
+        x0 = t.x;
+      if (t.x > x1)
+        x1 = t.x;
+      if (t.y < y0)
+        y0 = t.y;
+      if (t.y > y1)
+        y1 = t.y;
+      if (t.z < z0)
+        z0 = t.z;
+      if (t.z > z1)
+        z1 = t.z;
+    }
+  }
+
+  private double getVolume() {
+    // padded by MIN_CELL_SIZE so that flat or linear sets are not "dense"
+    return (x1 - x0 + MIN_CELL_SIZE) * (y1 - y0 + MIN_CELL_SIZE)
+        * (z1 - z0 + MIN_CELL_SIZE);
+  }
+
+  /**
+   * Bin all points; O(n).
+   *
+   */
+  void build() {
+    setBounds();
+    double size = Math.max(MIN_CELL_SIZE,
+        Math.cbrt(getVolume() * TUPLES_PER_CELL / Math.max(1, count)));
+    rCell = 1 / size;
+    nx = (int) ((x1 - x0) * rCell) + 1;
+    ny = (int) ((y1 - y0) * rCell) + 1;
+    nz = (int) ((z1 - z0) * rCell) + 1;
+    head = new int[nx * ny * nz];
+    for (int i = head.length; --i >= 0;)
+      head[i] = -1;
+    int n = tuples.length;
+    next = new int[n];
+    prev = new int[n];
+    cells = new int[n];
+    isSet = true;
+    // backward, so that each cell lists its points in the order added
+    for (int i = count; --i >= 0;)
+      link(i);
+  }
+
+  /**
+   * Relocate any points that have moved into a different cell since the last
+   * build or update. Only those points are relinked; the grid is rebuilt only
+   * if too many points have left its bounding box.
+   *
+   * @return number of points relinked
+   */
+  public int update() {
+    if (!isSet)
+      return 0;
+    int n = 0;
+    nOutside = 0;
+    for (int i = count; --i >= 0;) {
+      T3d t = tuples[i];
+      if (t.x < x0 || t.x > x1 || t.y < y0 || t.y > y1 || t.z < z0
+          || t.z > z1)
+        nOutside++;
+      int c = getCell(t);
+      if (c != cells[i]) {
+        unlink(i);
+        link(i);
+        n++;
+      }
+    }
+    if (nOutside > count / 8) {
+      build();
+      return count;
+    }
+    return n;
+  }
+
+  private void link(int i) {
+    int c = cells[i] = getCell(tuples[i]);
+    int h = head[c];
+    next[i] = h;
+    prev[i] = -1;
+    if (h >= 0)
+      prev[h] = i;
+    head[c] = i;
+  }
+
+  private void unlink(int i) {
+    int p = prev[i];
+    int n = next[i];
+    if (p >= 0)
+      next[p] = n;
+    else
+      head[cells[i]] = n;
+    if (n >= 0)
+      prev[n] = p;
+  }
+
+  private int getCell(T3d t) {
+    return (getX(t.x) * ny + getY(t.y)) * nz + getZ(t.z);
+  }
+
+  int getX(double x) {
+    return clamp((x - x0) * rCell, nx);
+  }
+
+  int getY(double y) {
+    return clamp((y - y0) * rCell, ny);
+  }
+
+  int getZ(double z) {
+    return clamp((z - z0) * rCell, nz);
+  }
+
+  private static int clamp(double d, int n) {
+    return (d <= 0 ? 0 : d >= n ? n - 1 : (int) d);
+  }
+
+  public CubeIterator allocateCubeIterator() {
+    return new CellIterator(this);
+  }
+
+}
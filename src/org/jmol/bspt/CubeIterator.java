@@ -27,7 +27,8 @@ import javajs.util.T3d;
 /**
  * Iterator used for finding all points within a box or a hemi-box
  *<p>
- * Obtain a CubeIterator by calling Bspt.allocateCubeIterator().
+ * Obtain a CubeIterator by calling Bspt.allocateCubeIterator()
+ * or CellList.allocateCubeIterator().
  *<p>
  * call initialize(...) or initializeHemizphere(...)
  *<p>
@@ -51,6 +52,10 @@ public class CubeIterator {
   // (on the first dim) is returned
   private boolean tHemisphere;
 
+  CubeIterator() {
+    // for CellIterator
+  }
+
   CubeIterator(Bspt bspt) {
     //centerValues = new double[bspt.dimMax];
     set(bspt);
@@ -35,6 +35,16 @@ abstract class Element {
   Bspt bspt;
   int count;
   abstract Element addTuple(int level, T3d tuple);
+
+  /**
+   * Reset this subtree's bounds from the current tuple positions.
+   * 
+   * @param bounds
+   *        workspace; bounds[level] is set to {minX, minY, minZ, maxX, maxY,
+   *        maxZ} for this subtree
+   * @param level
+   */
+  abstract void refit(double[][] bounds, int level);
   
   //abstract void dump(int level, SB sb);
   
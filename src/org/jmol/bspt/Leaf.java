@@ -70,6 +70,28 @@ class Leaf extends Element {
     }
   }
 
+  @Override
+  void refit(double[][] bounds, int level) {
+    double[] b = bounds[level];
+    b[0] = b[1] = b[2] = Double.MAX_VALUE;
+    b[3] = b[4] = b[5] = -Double.MAX_VALUE;
+    for (int i = count; --i >= 0;) {
+      T3d t = tuples[i];
+      if (t.x < b[0])
+        b[0] = t.x;
+      if (t.x > b[3])
+        b[3] = t.x;
+      if (t.y < b[1])
+        b[1] = t.y;
+      if (t.y > b[4])
+        b[4] = t.y;
+      if (t.z < b[2])
+        b[2] = t.z;
+      if (t.z > b[5])
+        b[5] = t.z;
+    }
+  }
+
   @Override
   Element addTuple(int level, T3d tuple) {
     if (count < Bspt.leafCountMax) {
@@ -123,6 +123,29 @@ class Node extends Element {
     return this;
   }
   
+  @Override
+  void refit(double[][] bounds, int level) {
+    double[] b = bounds[level];
+    double[] bc = bounds[level + 1];
+    eleLeft.refit(bounds, level + 1);
+    minLeft = bc[dim];
+    maxLeft = bc[dim + 3];
+    for (int i = 6; --i >= 0;)
+      b[i] = bc[i];
+    eleRight.refit(bounds, level + 1);
+    minRight = bc[dim];
+    maxRight = bc[dim + 3];
+    for (int i = 3; --i >= 0;) {
+      if (bc[i] < b[i])
+        b[i] = bc[i];
+      if (bc[i + 3] > b[i + 3])
+        b[i + 3] = bc[i + 3];
+    }
+    bspt.nNodes++;
+    if (maxLeft > minRight)
+      bspt.nOverlapping++;
+  }
+
 //  @Override
 //  void dump(int level, SB sb) {
 //    sb.append("\nnode LEFT" + level);
@@ -28,8 +28,10 @@ import java.util.Map;
 
 import javajs.util.AU;
 import javajs.util.Lst;
+import javajs.util.P3d;
 import javajs.util.PT;
 import javajs.util.SB;
+import javajs.util.V3d;
 
 import org.jmol.c.STR;
 import org.jmol.i18n.GT;
@@ -40,8 +42,11 @@ import org.jmol.modelset.HBond;
 import org.jmol.modelset.Model;
 import org.jmol.modelsetbio.AminoMonomer;
 import org.jmol.modelsetbio.AminoPolymer;
+import org.jmol.modelsetbio.BioModel;
 import org.jmol.modelsetbio.BioPolymer;
 import org.jmol.modelsetbio.Monomer;
+import org.jmol.script.T;
+import org.jmol.thread.ParallelTasks;
 import org.jmol.util.C;
 import org.jmol.util.Edge;
 import org.jmol.util.Escape;
@@ -211,6 +216,11 @@ public class DSSP {
   private Lst<Bridge> bridgesP;
   private boolean isDSSP2;
 
+  /**
+   * [ap, mmtfType, STR, BS] for each structure found, when deferred
+   */
+  private Lst<Object[]> structures;
+
   /**
    * 
    * @param objBioPolymers
@@ -224,6 +234,40 @@ public class DSSP {
    */
 
   
+  /**
+   * Hold back the protein structures found by the next calculateDssp until
+   * setStructures() is called. This allows several models to be analyzed at
+   * the same time, since ProteinStructure creation is not thread-safe.
+   * 
+   */
+  public void deferStructures() {
+    structures = new Lst<Object[]>();
+  }
+
+  /**
+   * Create the protein structures held back by deferStructures(), in the order
+   * they were found.
+   */
+  public void setStructures() {
+    if (structures == null)
+      return;
+    Lst<Object[]> list = structures;
+    structures = null;
+    for (int i = 0, n = list.size(); i < n; i++) {
+      Object[] s = list.get(i);
+      setStructureBS((AminoPolymer) s[0], ((Integer) s[1]).intValue(),
+          (STR) s[2], (BS) s[3]);
+    }
+  }
+
+  private void setStructureBS(AminoPolymer ap, int mmtfType, STR type, BS bs) {
+    if (structures == null)
+      ap.setStructureBS(0, mmtfType, type, bs, false);
+    else
+      structures.addLast(new Object[] { ap, Integer.valueOf(mmtfType), type,
+          BS.copy(bs) });
+  }
+
   @SuppressWarnings("unchecked")
   public String calculateDssp(Object[] objBioPolymers, int bioPolymerCount,
                               Object objVHBonds, boolean doReport,
@@ -378,8 +422,15 @@ public class DSSP {
 
     //   This part is the same as the Rasmol hydrogen bond calculation
     //
-
-    int[][][][] min = AU.newInt4(bioPolymerCount);
+    //   It depends only on the backbone, so it is saved with the model
+    //   and reused until a backbone atom moves.
+
+    double[] check = getBackboneCheck();
+    BioModel model = (BioModel) bioPolymers[0].model;
+    int[][][][] min = model.getCachedDsspHBonds(check);
+    if (min != null)
+      return min;
+    min = AU.newInt4(bioPolymerCount);
     for (int i = 0; i < bioPolymerCount; i++) {
       if (!(bioPolymers[i] instanceof AminoPolymer))
         continue;
@@ -397,10 +448,54 @@ public class DSSP {
           if (min[j] != null)
             bioPolymers[i].calcRasmolHydrogenBonds(bioPolymers[j], null, null,
                 null, 2, min[i], false, dsspIgnoreHydrogens);
-
+    model.setCachedDsspHBonds(check, min);
     return min;
   }
 
+  /**
+   * Everything getDualHydrogenBondArray depends upon: the N, CA, C, O, and
+   * (explicit or calculated) H positions of every amino polymer.
+   * 
+   * @return array to compare with the one saved with the model
+   */
+  private double[] getBackboneCheck() {
+    int n = 2;
+    for (int i = 0; i < bioPolymerCount; i++)
+      if (bioPolymers[i] instanceof AminoPolymer)
+        n += 2 + bioPolymers[i].monomerCount * 15;
+    double[] check = new double[n];
+    check[0] = (dsspIgnoreHydrogens ? 1 : 0);
+    check[1] = bioPolymerCount;
+    P3d pt = new P3d();
+    V3d vNH = new V3d();
+    int k = 2;
+    for (int i = 0; i < bioPolymerCount; i++) {
+      if (!(bioPolymers[i] instanceof AminoPolymer))
+        continue;
+      Monomer[] monomers = bioPolymers[i].monomers;
+      int nm = bioPolymers[i].monomerCount;
+      check[k++] = i;
+      check[k++] = nm;
+      for (int j = 0; j < nm; j++) {
+        AminoMonomer am = (AminoMonomer) monomers[j];
+        k = addCheckPoint(check, k, am.getNitrogenAtom());
+        k = addCheckPoint(check, k, am.getLeadAtom());
+        k = addCheckPoint(check, k, am.getCarbonylCarbonAtom());
+        k = addCheckPoint(check, k, am.getCarbonylOxygenAtom());
+        k = addCheckPoint(check, k,
+            am.getNHPoint(pt, vNH, false, dsspIgnoreHydrogens) ? pt : null);
+      }
+    }
+    return check;
+  }
+
+  private static int addCheckPoint(double[] check, int k, P3d pt) {
+    check[k++] = (pt == null ? Double.NaN : pt.x);
+    check[k++] = (pt == null ? Double.NaN : pt.y);
+    check[k++] = (pt == null ? Double.NaN : pt.z);
+    return k;
+  }
+
   /**
    * (p. 2581):
    * 
@@ -418,46 +513,137 @@ public class DSSP {
    * 
    * @param min
    */
-  private void getBridges(int[][][][] min) {
+  private void getBridges(final int[][][][] min) {
     // ooooooh! It IS possible to have 3 bridges to the same residue. (3A5F) 
     // 
     Atom[] atoms = bioPolymers[0].model.ms.at;
     Bridge bridge = null;
 
-    Map<String, Boolean> htTemp = new Hashtable<String, Boolean>();
+    // Finding the residue pairs that form bridges reads only min[][][][], 
+    // so that O(n^2) search is done in parallel; the bridges themselves 
+    // are then created here in the original order.
+
+    int n = 0;
     for (int p1 = 0; p1 < min.length; p1++)
-      if (bioPolymers[p1] instanceof AminoPolymer) {
-        AminoPolymer ap1 = ((AminoPolymer) bioPolymers[p1]);
-        int n = min[p1].length - 1;
-        for (int a = 1; a < n; a++) {
-          int ia = ap1.monomers[a].leadAtomIndex;
-          if (bsBad.get(ia))
-            continue;
-          for (int p2 = p1; p2 < min.length; p2++)
-            if (bioPolymers[p2] instanceof AminoPolymer)
-              for (int b = (p1 == p2 ? a + 3 : 1); b < min[p2].length - 1; b++) {
-                AminoPolymer ap2 = (AminoPolymer) bioPolymers[p2];
-                int ib = ap2.monomers[b].leadAtomIndex;
-                if (bsBad.get(ib))
-                  continue;
-                if ((bridge = getBridge(min, p1, a, p2, b, bridgesP, atoms[ia],
-                    atoms[ib], ap1, ap2, htTemp, false)) != null) {
-                } else if ((bridge = getBridge(min, p1, a, p2, b, bridgesA,
-                    atoms[ia], atoms[ib], ap1, ap2, htTemp, true)) != null) {
-                  bridge.isAntiparallel = true;
-                } else {
-                  continue;
-                }
-                if (Logger.debugging)
-                  Logger.debug("Bridge found " + bridge);
-                //setDone(bsDone1, bsDone2, ia);
-                //setDone(bsDone1, bsDone2, ib);
-                done[p1].set(a);
-                done[p2].set(b);
-                htBridges.put(ia + "-" + ib, bridge);
-              }
+      if (bioPolymers[p1] instanceof AminoPolymer)
+        n += Math.max(0, min[p1].length - 2);
+    final int[] residues = new int[n * 2];
+    for (int p1 = 0, pt = 0; p1 < min.length; p1++)
+      if (bioPolymers[p1] instanceof AminoPolymer)
+        for (int a = 1, na = min[p1].length - 1; a < na; a++) {
+          residues[pt++] = p1;
+          residues[pt++] = a;
         }
+    int nTasks = ParallelTasks.getTaskCount(
+        bioPolymers[0].model.ms.vwr.getBoolean(T.multiprocessor), n,
+        MIN_BRIDGE_RESIDUES);
+    if (nTasks > 1) // later residues have fewer partners, so use smaller blocks
+      nTasks = Math.min(n, nTasks * 4);
+    final int[][] found = new int[nTasks][];
+    nTasks = ParallelTasks.runTasks(n, nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        found[task] = findBridgePartners(min, residues, i0, i1);
       }
+    });
+
+    Map<String, Boolean> htTemp = new Hashtable<String, Boolean>();
+    for (int t = 0; t < nTasks; t++) {
+      int[] partners = found[t];
+      if (partners == null)
+        continue;
+      for (int i = 1, nf = partners[0]; i < nf;) {
+        int k = partners[i++] * 2;
+        int p1 = residues[k];
+        int a = residues[k + 1];
+        int p2 = partners[i++];
+        int b = partners[i++];
+        AminoPolymer ap1 = (AminoPolymer) bioPolymers[p1];
+        AminoPolymer ap2 = (AminoPolymer) bioPolymers[p2];
+        int ia = ap1.monomers[a].leadAtomIndex;
+        int ib = ap2.monomers[b].leadAtomIndex;
+        if ((bridge = getBridge(min, p1, a, p2, b, bridgesP, atoms[ia],
+            atoms[ib], ap1, ap2, htTemp, false)) != null) {
+        } else if ((bridge = getBridge(min, p1, a, p2, b, bridgesA, atoms[ia],
+            atoms[ib], ap1, ap2, htTemp, true)) != null) {
+          bridge.isAntiparallel = true;
+        } else {
+          continue;
+        }
+        if (Logger.debugging)
+          Logger.debug("Bridge found " + bridge);
+        //setDone(bsDone1, bsDone2, ia);
+        //setDone(bsDone1, bsDone2, ib);
+        done[p1].set(a);
+        done[p2].set(b);
+        htBridges.put(ia + "-" + ib, bridge);
+      }
+    }
+  }
+
+  /**
+   * smallest block of residues worth handing to another thread
+   */
+  private final static int MIN_BRIDGE_RESIDUES = 100;
+
+  /**
+   * @param min
+   * @param residues
+   *        [p1, a, p1, a, ....]
+   * @param i0
+   *        first residue, inclusive
+   * @param i1
+   *        last residue, exclusive
+   * @return [n, k, p2, b, k, p2, b, ...] for each bridge between residue k (a
+   *         of polymer p1) and residue b of polymer p2, with n the length used
+   */
+  private int[] findBridgePartners(int[][][][] min, int[] residues, int i0, int i1) {
+    int[] found = new int[64];
+    int n = 1;
+    for (int k = i0; k < i1; k++) {
+      int p1 = residues[k * 2];
+      int a = residues[k * 2 + 1];
+      AminoPolymer ap1 = ((AminoPolymer) bioPolymers[p1]);
+      if (bsBad.get(ap1.monomers[a].leadAtomIndex))
+        continue;
+      for (int p2 = p1; p2 < min.length; p2++)
+        if (bioPolymers[p2] instanceof AminoPolymer) {
+          AminoPolymer ap2 = (AminoPolymer) bioPolymers[p2];
+          for (int b = (p1 == p2 ? a + 3 : 1); b < min[p2].length - 1; b++) {
+            if (bsBad.get(ap2.monomers[b].leadAtomIndex)
+                || !isBridge(min, p1, a, p2, b, false)
+                && !isBridge(min, p1, a, p2, b, true))
+              continue;
+            if (n + 3 > found.length)
+              found = AU.doubleLengthI(found);
+            found[n++] = k;
+            found[n++] = p2;
+            found[n++] = b;
+          }
+        }
+    }
+    found[0] = n;
+    return found;
+  }
+
+  /**
+   * the test used by getBridge
+   * 
+   * @param min
+   * @param p1
+   * @param a
+   * @param p2
+   * @param b
+   * @param isAntiparallel
+   * @return true if residues a and b form a bridge
+   */
+  private boolean isBridge(int[][][][] min, int p1, int a, int p2, int b,
+                           boolean isAntiparallel) {
+    int[] offsets = (isAntiparallel ? sheetOffsets[1] : sheetOffsets[0]);
+    return (isHbonded(a + offsets[0], b + offsets[1], p1, p2, min) != null
+        && isHbonded(b + offsets[2], a + offsets[3], p2, p1, min) != null
+        || isHbonded(a + offsets[4], b + offsets[5], p1, p2, min) != null
+        && isHbonded(b + offsets[6], a + offsets[7], p2, p1, min) != null);
   }
 
   private int[][] sheetOffsets = { new int[] { 0, -1, 1, 0, 1, 0, 0, -1 },
@@ -562,7 +748,7 @@ public class DSSP {
         setTag(labels[i], bsSheet, 'E');
       }
       if (setStructure) {
-        ap.setStructureBS(0, 3, STR.SHEET, bsSheet, false);
+        setStructureBS(ap, 3, STR.SHEET, bsSheet);
       }
       done[i].or(bsSheet);
       done[i].or(bsBridge);
@@ -755,7 +941,7 @@ public class DSSP {
     // G, H, and I have been set; now set what is left over as turn
 
     if (setStructure)
-      ap.setStructureBS(0, 6, STR.TURN, bsTurn, false);
+      setStructureBS(ap, 6, STR.TURN, bsTurn);
 
     if (doReport) {
       setTag(labels[iPolymer], bsTurn, 'T');
@@ -862,7 +1048,7 @@ public class DSSP {
     // create the Jmol helix structures of the given subtype
 
     if (setStructure)
-      ap.setStructureBS(0, mmtfType, subtype, bsHelix, false); // GHI;
+      setStructureBS(ap, mmtfType, subtype, bsHelix); // GHI;
 
     if (doReport) {
       setTag(labels[iPolymer], bsHelix, (char) ('D' + pitch));
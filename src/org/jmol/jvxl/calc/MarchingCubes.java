@@ -25,11 +25,13 @@ package org.jmol.jvxl.calc;
 
 
 
+import javajs.util.AU;
 import javajs.util.BS;
 import org.jmol.jvxl.api.VertexDataServer;
 import org.jmol.jvxl.data.JvxlCoder;
 import org.jmol.jvxl.data.VolumeData;
 import org.jmol.jvxl.readers.Parameters;
+import org.jmol.thread.ParallelTasks;
 
 import javajs.util.SB;
 import javajs.util.P3d;
@@ -82,6 +84,7 @@ public class MarchingCubes extends TriangleData {
   protected boolean isCutoffAbsolute;
   protected boolean isSquared;
   protected boolean isXLowToHigh;
+  protected boolean multiProcessor;
 
   protected int cubeCountX, cubeCountY, cubeCountZ;
   protected int nY, nZ;
@@ -137,6 +140,7 @@ public class MarchingCubes extends TriangleData {
     contourType = params.contourType;
     isSquared = params.isSquared;
     isXLowToHigh = params.isXLowToHigh;
+    multiProcessor = params.multiProcessor;
 
     cubeCountX = volumeData.voxelCounts[0] - 1;
     cubeCountY = volumeData.voxelCounts[1] - 1;
@@ -282,6 +286,12 @@ public class MarchingCubes extends TriangleData {
     allInside = (colorDensity && (cutoff == 0 
         || mode == MODE_JVXL && bsVoxels.nextSetBit(0) < 0));
     boolean colorDensityAll = (colorDensity && cutoff == 0);
+    int[][] cubeLists = (mode == MODE_CUBE && !colorDensity
+        && mappingPlane == null ? classifyCubes(x0, x1, xStep, y1, z1) : null);
+    if (cubeLists != null) {
+      processCubeLists(cubeLists);
+      return edgeData.toString();
+    }
     double v = 0;
     for (int x = x0; x != x1; x += xStep, ptX += ptStep, pt = ptX) {
 
@@ -368,6 +378,147 @@ public class MarchingCubes extends TriangleData {
     return edgeData.toString();
   }
 
+  /**
+   * For large MODE_CUBE data sets, the inside/outside test for every cube --
+   * by far the largest part of the work -- is done in parallel over slabs of
+   * x-planes. Each slab fills its own part of bsVoxels and returns a list of
+   * the cubes that straddle the cutoff, in the same order as the serial scan.
+   * Edge vertices and triangles are then created serially from those lists
+   * by processCubeLists(), so vertices shared across slab boundaries are
+   * found in isoPointIndexPlanes just as they are in the serial scan, and the
+   * vertex, triangle, and JVXL edge data are identical to the serial result.
+   * 
+   * Each list is int[] {n, ...} with cube pointers and, at the start of each
+   * plane, a negative marker -1 - (x << 1 | noValues).
+   * 
+   * Planes are skipped using bsExcludedPlanes as it stands before the scan.
+   * That is all the serial scan ever tests, in either direction: at plane x
+   * it tests only x and x + xStep, neither of which it has scanned yet, and it
+   * only marks plane x after scanning it. processCubeLists() marks the
+   * no-value planes afterward, once the tasks are done reading.
+   * 
+   * @param x0
+   * @param x1
+   * @param xStep
+   * @param y1
+   * @param z1
+   * @return lists of straddling cubes, one per slab, or null if run serially
+   */
+  private int[][] classifyCubes(final int x0, int x1, final int xStep,
+                                final int y1, final int z1) {
+    final double[][][] data = volumeData.getVoxelData();
+    final int nPlanes = (x1 - x0) * xStep;
+    if (data == null || data.length <= cubeCountX || nPlanes < 2)
+      return null;
+    int nTasks = ParallelTasks.getTaskCount(multiProcessor, nPlanes,
+        Math.max(1, (1 << 16) / yzCount));
+    if (nTasks < 2)
+      return null;
+    final int[][] lists = new int[nTasks][];
+    final BS[] bsInside = new BS[nTasks];
+    final int[] bases = new int[nTasks];
+    final BS bsExcluded = bsExcludedPlanes;
+    ParallelTasks.runTasks(nPlanes, nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int k0, int k1) {
+        // bits are set relative to the lowest plane of this slab
+        int base = bases[task] = Math.min(x0 + k0 * xStep, x0 + (k1 - 1)
+            * xStep) * yzCount;
+        lists[task] = classifySlab(data, x0 + k0 * xStep, k1 - k0, xStep, y1,
+            z1, bsExcluded, bsInside[task] = new BS(), base);
+      }
+    });
+    for (int t = 0; t < nTasks; t++) {
+      BS bs = bsInside[t];
+      for (int i = bs.nextSetBit(0), j; i >= 0; i = bs.nextSetBit(j)) {
+        j = bs.nextClearBit(i);
+        bsVoxels.setBits(bases[t] + i, bases[t] + j);
+      }
+    }
+    return lists;
+  }
+
+  private int[] classifySlab(double[][][] data, int x, int nPlanes,
+                             int xStep, int y1, int z1, BS bsExcluded,
+                             BS bsInside, int base) {
+    int[] list = new int[256];
+    int n = 0;
+    for (int k = 0; k < nPlanes; k++, x += xStep) {
+      if (bsExcluded.get(x) && bsExcluded.get(x + xStep))
+        continue;
+      if (n + 1 >= list.length)
+        list = AU.arrayCopyI(list, list.length * 2);
+      int marker = ++n;
+      boolean noValues = true;
+      for (int y = y1; --y >= 0;) {
+        for (int z = z1; --z >= 0;) {
+          int pt = x * yzCount + y * nZ + z;
+          int insideMask = 0;
+          double v = 0;
+          for (int i = 8; --i >= 0;) {
+            P3i o = cubeVertexOffsets[i];
+            double vi = v = data[x + o.x][y + o.y][z + o.z];
+            if (isSquared)
+              vi *= vi;
+            if (isInside(vi, cutoff, isCutoffAbsolute)) {
+              insideMask |= Pwr2[i];
+              bsInside.set(pt + linearOffsets[i] - base);
+            }
+          }
+          if (noValues && !Double.isNaN(v))
+            noValues = false;
+          if (insideMask == 0 || insideMask == 0xFF)
+            continue;
+          if (n + 1 >= list.length)
+            list = AU.arrayCopyI(list, list.length * 2);
+          list[++n] = pt;
+        }
+      }
+      list[marker] = -1 - ((x << 1) | (noValues ? 1 : 0));
+    }
+    list[0] = n;
+    return list;
+  }
+
+  /**
+   * Serially create the vertices and triangles for the cubes found by
+   * classifyCubes(), in original scan order.
+   * 
+   * @param cubeLists
+   */
+  private void processCubeLists(int[][] cubeLists) {
+    int xNoValues = -1;
+    for (int t = 0; t < cubeLists.length; t++) {
+      int[] list = cubeLists[t];
+      for (int j = 1, n = list[0]; j <= n; j++) {
+        int pt = list[j];
+        if (pt < 0) {
+          if (xNoValues >= 0)
+            bsExcludedPlanes.set(xNoValues);
+          int m = -1 - pt;
+          xNoValues = ((m & 1) == 1 ? m >> 1 : -1);
+          int[][] indexPlane = isoPointIndexPlanes[0];
+          isoPointIndexPlanes[0] = isoPointIndexPlanes[1];
+          isoPointIndexPlanes[1] = resetIndexPlane(indexPlane);
+          continue;
+        }
+        int x = pt / yzCount;
+        int y = (pt % yzCount) / nZ;
+        int z = pt % nZ;
+        int insideMask = 0;
+        for (int i = 8; --i >= 0;) {
+          getValue(x, y, z, pt, i);
+          if (isInside)
+            insideMask |= Pwr2[i];
+        }
+        if (processOneCubical(insideMask, x, y, z, pt) && !isContoured)
+          processTriangles(insideMask);
+      }
+    }
+    if (xNoValues >= 0)
+      bsExcludedPlanes.set(xNoValues);
+  }
+
   private double getValue(int x, int y, int z, int pt, int i) {
     double v;
 
@@ -134,12 +134,26 @@ public class MeshData extends MeshSurface {
   public final static int MODE_GET_COLOR_INDEXES = 2;
   public final static int MODE_PUT_SETS = 3;
   public final static int MODE_PUT_VERTICES = 4;
+  public final static int MODE_GET_MAPPED_VALUES = 5;
+  public final static int MODE_PUT_MAPPED_VALUES = 6;
 
   private boolean setsSuccessful;
   public int vertexIncrement = 1;
 
   public String polygonColorData;
 
+  /**
+   * identifies a set of mapped vertex values for MODE_GET_MAPPED_VALUES and
+   * MODE_PUT_MAPPED_VALUES; set to null by the server when there is no match
+   */
+  public String mapKey;
+  
+  /**
+   * the data that the mapped values were calculated from, which must also
+   * match for cached values to be used
+   */
+  public double[] mapCheck;
+
   public int addVertexCopy(T3d vertex, double value, int assocVertex, boolean asCopy) {
     if (assocVertex < 0)
       vertexIncrement = -assocVertex;  //3 in some cases
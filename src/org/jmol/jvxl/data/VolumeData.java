@@ -115,6 +115,7 @@ package org.jmol.jvxl.data;
 import java.util.Hashtable;
 import java.util.Map;
 
+import javajs.util.BS;
 import javajs.util.M3d;
 import javajs.util.P3d;
 import javajs.util.P4d;
@@ -147,11 +148,28 @@ public class VolumeData {
   
   public void setVoxelDataAsArray(double[][][] voxelData) {
     this.voxelData = voxelData;
+    voxelFloats = null;
     if (voxelData != null)
       sr = null;
   }
 
+  /**
+   * Compact alternative to setVoxelDataAsArray for data that are natively
+   * 32-bit: one flat [y * nz + z] plane per x; planes may be null if unused.
+   * 
+   * @param planes
+   */
+  public void setVoxelDataAsFloat(float[][] planes) {
+    voxelFloats = planes;
+    if (planes == null)
+      return;
+    voxelData = null;
+    sr = null;
+    getYzCount();
+  }
+
   private Map<Integer, Double> voxelMap; // alternative to voxelData for sparse (plane interesected) data
+  private float[][] voxelFloats; // alternative to voxelData for float data, flat yz planes
   public final double[] volumetricVectorLengths = new double[3];
   private double maxVectorLength;
   private double minToPlaneDistance;
@@ -257,6 +275,8 @@ public class VolumeData {
   public double getVoxelDataAt(int pt) {
     int ix = pt / yzCount;
     pt -= ix * yzCount;
+    if (voxelFloats != null)
+      return getFloatValue(ix, pt);
     int iy = pt / voxelCounts[2];
     int iz = pt - iy * voxelCounts[2];
     return voxelData[ix][iy][iz];
@@ -277,6 +297,10 @@ public class VolumeData {
   public void setVoxelData(int pt, double value) {
     int ix = pt / yzCount;
     pt -= ix * yzCount;
+    if (voxelFloats != null) {
+      voxelFloats[ix][pt] = (float) value;
+      return;
+    }
     int iy = pt / voxelCounts[2];
     int iz = pt - iy * voxelCounts[2];
     voxelData[ix][iy][iz] = value;
@@ -407,17 +431,47 @@ public class VolumeData {
     return v1 + mantissa(ptXyzTemp.z - zLower) * (v2 - v1);
   }
 
+  /**
+   * Find the x planes that lookupInterpolatedVoxelValue will touch for a set
+   * of mesh vertices. A mapping pass only needs to keep these planes.
+   * 
+   * @param vertices
+   * @param vc
+   * @return bitset of needed x indices
+   */
+  public BS getVertexPlanes(T3d[] vertices, int vc) {
+    BS bs = new BS();
+    int iMax = voxelCounts[0] - 1;
+    for (int i = vc; --i >= 0;) {
+      if (vertices[i] == null)
+        continue;
+      ptXyzTemp.sub2(vertices[i], volumetricOrigin);
+      inverseMatrix.rotate(ptXyzTemp);
+      int x = indexLower(ptXyzTemp.x, iMax);
+      bs.set(x);
+      bs.set(indexUpper(ptXyzTemp.x, x, iMax));
+    }
+    return bs;
+  }
+
   private double mantissa(double f) {
     return (isPeriodic ? f - (double) Math.floor(f) : f);
   }
 
   public double getVoxelValue(int x, int y, int z) {
+    if (voxelFloats != null)
+      return getFloatValue(x, y * voxelCounts[2] + z);
     if (voxelMap == null)
       return voxelData[x][y][z];
     Double f = voxelMap.get(Integer.valueOf(getPointIndex(x, y, z)));
     return (f == null ? Double.NaN : f.doubleValue());
   }
 
+  private double getFloatValue(int x, int ptyz) {
+    double v = voxelFloats[x][ptyz];
+    return (isSquared ? v * v : v);
+  }
+
   public static double getFractional2DValue(double fx, double fy, double x11,
                                            double x12, double x21, double x22) {
     double v1 = x11 + fx * (x12 - x11);
@@ -484,19 +538,34 @@ public class VolumeData {
       this.isSquared = isSquared;
       return;
     }
+    if (voxelFloats != null) {
+      // float data are squared on the fly
+      this.isSquared = isSquared;
+      if (doInvert) {
+        for (int x = voxelFloats.length; --x >= 0;)
+          if (voxelFloats[x] != null)
+            for (int i = voxelFloats[x].length; --i >= 0;)
+              voxelFloats[x][i] = (float) (invertCutoff - getFloatValue(x, i));
+        this.isSquared = false;
+      }
+      return;
+    }
     int nx = voxelCounts[0];
     int ny = voxelCounts[1];
     int nz = voxelCounts[2];
+    // planes not needed for mapping may have been skipped
     if (isSquared)
       for (int x = 0; x < nx; x++)
-        for (int y = 0; y < ny; y++)
-          for (int z = 0; z < nz; z++)
-            voxelData[x][y][z] *= voxelData[x][y][z];
+        if (voxelData[x] != null)
+          for (int y = 0; y < ny; y++)
+            for (int z = 0; z < nz; z++)
+              voxelData[x][y][z] *= voxelData[x][y][z];
     if (doInvert)
       for (int x = 0; x < nx; x++)
-        for (int y = 0; y < ny; y++)
-          for (int z = 0; z < nz; z++)
-            voxelData[x][y][z] = invertCutoff - voxelData[x][y][z];
+        if (voxelData[x] != null)
+          for (int y = 0; y < ny; y++)
+            for (int z = 0; z < nz; z++)
+              voxelData[x][y][z] = invertCutoff - voxelData[x][y][z];
   }
 
   
@@ -40,6 +40,7 @@ import org.jmol.c.VDW;
 import javajs.util.BS;
 import org.jmol.jvxl.data.JvxlCoder;
 import org.jmol.jvxl.data.MeshData;
+import org.jmol.thread.ParallelTasks;
 import org.jmol.util.BSUtil;
 import org.jmol.util.ContactPair;
 import org.jmol.util.Logger;
@@ -495,35 +496,119 @@ abstract class AtomDataReader extends VolumeDataReader {
   protected final P3i pt1 = new P3i();
   protected final P3d ptV = new P3d();
 
-  protected void markSphereVoxels(double r0, double distance) {
-    boolean isWithin = (distance != Double.MAX_VALUE && point != null);
-    T3d v0 = volumetricVectors[0];
-    T3d v1 = volumetricVectors[1];
-    T3d v2 = volumetricVectors[2];
+  protected void markSphereVoxels(final double r0, final double distance) {
+    final boolean isWithin = (distance != Double.MAX_VALUE && point != null);
+    int n = 0;
+    final int[] atoms = new int[thisAtomSet.cardinality()];
     for (int iAtom = thisAtomSet.nextSetBit(0); iAtom >= 0; iAtom = thisAtomSet
         .nextSetBit(iAtom + 1)) {
       if (!havePlane && validSpheres != null && !validSpheres.get(iAtom))
         continue;
-      boolean isSurface = (noFaceSpheres != null && noFaceSpheres.get(iAtom));
-      boolean isNearby = (iAtom >= firstNearbyAtom);
-      P3d ptA = atomXyzTruncated[iAtom];
-      double rA = atomRadius[iAtom];
-      if (isWithin && ptA.distance(point) > distance + rA + 0.5)
+      if (isWithin
+          && atomXyzTruncated[iAtom].distance(point) > distance
+              + atomRadius[iAtom] + 0.5)
         continue;
-      double rA0 = rA + r0;
-      setGridLimitsForAtom(ptA, rA0, pt0, pt1);
-      //pt1.y = nPointsY;
-      //pt1.z = nPointsZ;
+      atoms[n++] = iAtom;
+    }
+    final int[] limits = new int[n * 6];
+    for (int i = 0; i < n; i++) {
+      setGridLimitsForAtom(atomXyzTruncated[atoms[i]], atomRadius[atoms[i]]
+          + r0, pt0, pt1);
       if (isProgressive) {
         pt0.x = thisX;
         pt1.x = thisX + 1;
       }
-      volumeData.voxelPtToXYZ(pt0.x, pt0.y, pt0.z, ptV);
-      for (int i = pt0.x; i < pt1.x; i++, ptV.add2(v0, ptY0)) {
+      setLimits(limits, i, pt0, pt1);
+    }
+    // split the grid into slabs -- along y for a single progressive plane --
+    // so that each voxel still sees the atoms in the same order
+    final int nAtoms = n;
+    final boolean byY = isProgressive;
+    n = (byY ? nPointsY : nPointsX);
+    int nTasks = ParallelTasks.getTaskCount(params.multiProcessor, n, MIN_SLAB);
+    final BS[] bsTask = (noFaceSpheres != null && nTasks > 1 ? new BS[nTasks]
+        : null);
+    ParallelTasks.runTasks(n, nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        BS bs = (bsTask == null ? bsSurfaceVoxels : (bsTask[task] = new BS()));
+        if (byY)
+          markSphereVoxelSlab(atoms, nAtoms, limits, r0, distance, isWithin,
+              0, nPointsX, i0, i1, bs);
+        else
+          markSphereVoxelSlab(atoms, nAtoms, limits, r0, distance, isWithin,
+              i0, i1, 0, nPointsY, bs);
+      }
+    });
+    if (bsTask != null)
+      for (int i = 0; i < bsTask.length; i++)
+        if (bsTask[i] != null)
+          bsSurfaceVoxels.or(bsTask[i]);
+  }
+
+  protected final static int MIN_SLAB = 4;
+
+  protected static void setLimits(int[] limits, int i, P3i pt0, P3i pt1) {
+    i *= 6;
+    limits[i++] = pt0.x;
+    limits[i++] = pt0.y;
+    limits[i++] = pt0.z;
+    limits[i++] = pt1.x;
+    limits[i++] = pt1.y;
+    limits[i] = pt1.z;
+  }
+
+  /**
+   * Mark voxels x0 <= i < x1, y0 <= j < y1 for a list of atoms. Voxel
+   * positions are still stepped from each atom's own grid corner, so they are
+   * identical to those of a single pass over the whole grid.
+   * 
+   * @param atoms
+   * @param nAtoms
+   * @param limits
+   * @param r0
+   * @param distance
+   * @param isWithin
+   * @param x0
+   * @param x1
+   * @param y0
+   * @param y1
+   * @param bs
+   *        surface voxels for this slab
+   */
+  private void markSphereVoxelSlab(int[] atoms, int nAtoms, int[] limits,
+                                   double r0, double distance,
+                                   boolean isWithin, int x0, int x1, int y0,
+                                   int y1, BS bs) {
+    T3d v0 = volumetricVectors[0];
+    T3d v1 = volumetricVectors[1];
+    T3d v2 = volumetricVectors[2];
+    P3d ptV = new P3d();
+    P3d ptY0 = new P3d();
+    P3d ptZ0 = new P3d();
+    for (int n = 0, g = 0; n < nAtoms; n++, g += 6) {
+      int iMax = Math.min(limits[g + 3], x1);
+      int jMax = Math.min(limits[g + 4], y1);
+      if (iMax <= x0 || jMax <= y0)
+        continue;
+      int iAtom = atoms[n];
+      boolean isSurface = (noFaceSpheres != null && noFaceSpheres.get(iAtom));
+      boolean isNearby = (iAtom >= firstNearbyAtom);
+      P3d ptA = atomXyzTruncated[iAtom];
+      double rA = atomRadius[iAtom];
+      double rA0 = rA + r0;
+      int k0 = limits[g + 2];
+      int k1 = limits[g + 5];
+      volumeData.voxelPtToXYZ(limits[g], limits[g + 1], k0, ptV);
+      for (int i = limits[g]; i < iMax; i++, ptV.add2(v0, ptY0)) {
         ptY0.setT(ptV);
-        for (int j = pt0.y; j < pt1.y; j++, ptV.add2(v1, ptZ0)) {
+        if (i < x0)
+          continue;
+        for (int j = limits[g + 1]; j < jMax; j++, ptV.add2(v1, ptZ0)) {
           ptZ0.setT(ptV);
-          for (int k = pt0.z; k < pt1.z; k++, ptV.add(v2)) {
+          if (j < y0)
+            continue;
+          for (int k = k0; k < k1; k++, ptV.add(v2)) {
             double value = ptV.distance(ptA) - rA;
             int ipt = volumeData.getPointIndex(i, j, k);
             if ((r0 == 0 || value <= rA0) && value < getVoxel(i, j, k, ipt)) {
@@ -534,7 +619,7 @@ abstract class AtomDataReader extends VolumeDataReader {
                 if (voxelSource != null)
                   voxelSource[ipt] = iAtom + 1;
                 if (value < 0 && isSurface)
-                  bsSurfaceVoxels.set(ipt);
+                  bs.set(ipt);
               }
             }
           }
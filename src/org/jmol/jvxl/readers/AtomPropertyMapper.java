@@ -44,6 +44,7 @@ class AtomPropertyMapper extends AtomDataReader {
   private MepCalculation mepCalc;
   private String mepType;
   private int calcType = 0;
+  private boolean haveTree;
 
   AtomPropertyMapper(){}
   
@@ -125,8 +126,31 @@ class AtomPropertyMapper extends AtomDataReader {
     if (bsNearby != null)
       bsMySelected.or(bsNearby);
     iter = sg.atomDataServer.getSelectedAtomIterator(bsMySelected, false, false, false);
+    haveTree = (mepCalc != null && maxDistance == Integer.MAX_VALUE
+        && atomProp != null && mepCalc.setTree(atomXyzTruncated, atomProp,
+        myAtomCount, calcType, params.mep_accuracy));
   }
   
+  @Override
+  protected String getMapKey() {
+    if (haveOneProperty || params.thePlane != null)
+      return null;
+    double[] check = new double[myAtomCount * 5];
+    for (int i = 0, pt = 0; i < myAtomCount; i++) {
+      P3d p = atomXyzTruncated[i];
+      check[pt++] = atomIndex[i];
+      check[pt++] = p.x;
+      check[pt++] = p.y;
+      check[pt++] = p.z;
+      check[pt++] = (atomProp == null ? 0 : atomProp[i]);
+    }
+    meshData.mapCheck = check;
+    return (mepType == null ? "property" : mepType) + " " + calcType + " "
+        + params.mep_accuracy + " " + maxDistance + " " + doSmoothProperty
+        + " " + smoothingPower + " " + firstNearbyAtom + " "
+        + meshData.mergeVertexCount0;
+  }
+
   @Override
   protected void finalizeMapping() {
     iter.release();
@@ -155,6 +179,11 @@ class AtomPropertyMapper extends AtomDataReader {
   public double getValueAtPoint(T3d pt, boolean getSource) {
     if (haveOneProperty && !getSource)
       return theProperty;
+    if (haveTree) {
+      int i = mepCalc.getNearestAtom(pt, firstNearbyAtom);
+      iAtomSurface = (i < 0 ? -1 : atomIndex[i]);
+      return mepCalc.getTreeValue(pt);
+    }
     double dmin = Double.MAX_VALUE;
     double dminNearby = Double.MAX_VALUE;
     double value = (doSmoothProperty ? 0 : Double.NaN);
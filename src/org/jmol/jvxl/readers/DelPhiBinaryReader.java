@@ -76,6 +76,7 @@ class DelPhiBinaryReader extends VolumeFileReader {
       params.insideOut = !params.insideOut;
     allowSigma = false;
     isAngstroms = true;
+    isFloatData = true;
   }
       
   private double[] data;
@@ -112,6 +112,7 @@ class IsoMOReader extends AtomDataReader {
     } else {
       q = (QuantumCalculation) Interface.getOption(
           className, (Viewer) sg.atomDataServer, "file");
+      q.multiProcessor = params.multiProcessor;
       if (isNci) {
         qpc = (QuantumPlaneCalculation) q;
       } else {
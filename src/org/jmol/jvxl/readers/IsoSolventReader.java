@@ -47,6 +47,7 @@ import org.jmol.api.AtomIndexIterator;
 //import org.jmol.bspt.CubeIterator;
 import javajs.util.BS;
 import org.jmol.jvxl.data.MeshData;
+import org.jmol.thread.ParallelTasks;
 
 /**
  * Jmol 14.31.32/15.1.32 
@@ -925,12 +926,65 @@ class IsoSolventReader extends AtomDataReader {
      * In the second pass we are marking inside (-) voxels.
      * 
      */
+    int nFaces = vFaces.size();
+    final int[] limits = new int[nFaces * 6];
+    for (int fi = nFaces; --fi >= 0;) {
+      setGridLimitsForAtom(vFaces.get(fi).pS, sr, pt0, pt1);
+      setLimits(limits, fi, pt0, pt1);
+    }
+    final boolean isFirst = firstPass;
+    int nTasks = ParallelTasks.getTaskCount(params.multiProcessor, nPointsX, MIN_SLAB);
+    final BS[] bsTask = (nTasks > 1 ? new BS[nTasks * 2] : null);
+    ParallelTasks.runTasks(nPointsX, nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        BS bsDone = bsSurfaceDone;
+        BS bsSurface = bsSurfaceVoxels;
+        if (bsTask != null) {
+          bsTask[task * 2] = bsSurface = new BS();
+          if (isFirst)
+            bsTask[task * 2 + 1] = bsDone = new BS();
+        }
+        markFaceVoxelSlab(isFirst, limits, i0, i1, bsDone, bsSurface);
+      }
+    });
+    if (bsTask != null)
+      for (int i = 0; i < bsTask.length; i += 2) {
+        if (bsTask[i] != null)
+          bsSurfaceVoxels.or(bsTask[i]);
+        if (bsTask[i + 1] != null)
+          bsSurfaceDone.or(bsTask[i + 1]);
+      }
+  }
+
+  /**
+   * Mark face voxels with x0 <= i < x1. On the second pass, bsDone is only
+   * read, so it can be shared.
+   * 
+   * @param firstPass
+   * @param limits
+   * @param x0
+   * @param x1
+   * @param bsDone
+   * @param bsSurface
+   */
+  private void markFaceVoxelSlab(boolean firstPass, int[] limits, int x0,
+                                 int x1, BS bsDone, BS bsSurface) {
     BS bsThisPass = new BS();
     T3d v0 = volumetricVectors[0];
     T3d v1 = volumetricVectors[1];
     T3d v2 = volumetricVectors[2];
-
+    P3d ptV = new P3d();
+    P3d ptY0 = new P3d();
+    P3d ptZ0 = new P3d();
+    P4d plane = new P4d();
+    V3d vTemp = new V3d();
+    V3d vTemp2 = new V3d();
     for (int fi = vFaces.size(); --fi >= 0;) {
+      int g = fi * 6;
+      int iMax = Math.min(limits[g + 3], x1);
+      if (iMax <= x0)
+        continue;
       Face f = vFaces.get(fi);
       P3d ptA = atomXyzTruncated[f.ia];
       P3d ptB = atomXyzTruncated[f.ib];
@@ -940,23 +994,24 @@ class IsoSolventReader extends AtomDataReader {
       // voxels that have already been over-written by another face.
       // If they have, we go for the more positive one (further out);
       // if not, then we go for the less positive one (further in);
-      setGridLimitsForAtom(ptS, sr, pt0, pt1);
-      volumeData.voxelPtToXYZ(pt0.x, pt0.y, pt0.z, ptV);
-      for (int i = pt0.x; i < pt1.x; i++, ptV.add2(v0, ptY0)) {
+      volumeData.voxelPtToXYZ(limits[g], limits[g + 1], limits[g + 2], ptV);
+      for (int i = limits[g]; i < iMax; i++, ptV.add2(v0, ptY0)) {
         ptY0.setT(ptV);
-        for (int j = pt0.y; j < pt1.y; j++, ptV.add2(v1, ptZ0)) {
+        if (i < x0)
+          continue;
+        for (int j = limits[g + 1]; j < limits[g + 4]; j++, ptV.add2(v1, ptZ0)) {
           ptZ0.setT(ptV);
-          for (int k = pt0.z; k < pt1.z; k++, ptV.add(v2)) {
+          for (int k = limits[g + 2]; k < limits[g + 5]; k++, ptV.add(v2)) {
             // must be in tetrahedron on second pass for markSphere to be correct...
             // but this does cause certain problems with reentrant faces in ttest4.xyz
             double value = sr - ptV.distance(ptS);
             double v = voxelData[i][j][k];
             int ipt = volumeData.getPointIndex(i, j, k);
             if (firstPass && value > 0)
-              bsSurfaceDone.set(ipt);
+              bsDone.set(ipt);
             if (MeasureD.isInTetrahedron(ptV, ptA, ptB, ptC, ptS, plane, vTemp,
                 vTemp2, false)) {
-              if (!firstPass ? !bsSurfaceDone.get(ipt) && value < 0
+              if (!firstPass ? !bsDone.get(ipt) && value < 0
                   && value > -volumeData.maxGrid * 1.8d
                   && (value > v) == bsThisPass.get(ipt)
                   : (value > 0 && (v < 0 || v == Double.MAX_VALUE || (value > v) == bsThisPass
@@ -966,7 +1021,7 @@ class IsoSolventReader extends AtomDataReader {
                 if (voxelSource != null)
                   voxelSource[ipt] = -1 - f.ia;
                 if (value > 0) {
-                  bsSurfaceVoxels.set(ipt);
+                  bsSurface.set(ipt);
                 }
               }
             }
@@ -1047,32 +1102,50 @@ class IsoSolventReader extends AtomDataReader {
     
     // this is the bottleneck right here:
     
-    T3d v0 = volumetricVectors[0];
-    T3d v1 = volumetricVectors[1];
-    T3d v2 = volumetricVectors[2];
+    int n = vEdges.size();
+    final Edge[] edges = new Edge[n];
+    final int[] limits = new int[n * 6];
+    n = 0;
     for (int ei = vEdges.size(); --ei >= 0;) {
       Edge edge = vEdges.get(ei);
       if (!edge.isValid())
         continue;
-      int ia = edge.ia;
-      int ib = edge.ib;
-      P3d ptA = atomXyzTruncated[ia];
-      P3d ptB = atomXyzTruncated[ib];
-      rAS = rs[ia];
-      rBS = rs[ib];
-      rAS2 = rs2[ia];//rAS * rAS;
-      rBS2 = rs2[ib];//rBS * rBS;
-      dAB = edge.d;
-      dAB2 = edge.d2;
-      ecosASB2 = edge.cosASB2;
       setGridLimitsForAtom(edge, edge.maxr, pt0, pt1);
-      volumeData.voxelPtToXYZ(pt0.x, pt0.y, pt0.z, ptV);
-      for (int i = pt0.x; i < pt1.x; i++, ptV.add2(v0, ptY0)) {
+      setLimits(limits, n, pt0, pt1);
+      edges[n++] = edge;
+    }
+    final int nEdges = n;
+    ParallelTasks.run(params.multiProcessor, nPointsX, MIN_SLAB, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        markToroidVoxelSlab(edges, nEdges, limits, i0, i1);
+      }
+    });
+  }
+
+  private void markToroidVoxelSlab(Edge[] edges, int nEdges, int[] limits,
+                                   int x0, int x1) {
+    T3d v0 = volumetricVectors[0];
+    T3d v1 = volumetricVectors[1];
+    T3d v2 = volumetricVectors[2];
+    P3d ptV = new P3d();
+    P3d ptY0 = new P3d();
+    P3d ptZ0 = new P3d();
+    P3d p = new P3d();
+    for (int ei = 0, g = 0; ei < nEdges; ei++, g += 6) {
+      int iMax = Math.min(limits[g + 3], x1);
+      if (iMax <= x0)
+        continue;
+      Edge edge = edges[ei];
+      volumeData.voxelPtToXYZ(limits[g], limits[g + 1], limits[g + 2], ptV);
+      for (int i = limits[g]; i < iMax; i++, ptV.add2(v0, ptY0)) {
         ptY0.setT(ptV);
-        for (int j = pt0.y; j < pt1.y; j++, ptV.add2(v1, ptZ0)) {
+        if (i < x0)
+          continue;
+        for (int j = limits[g + 1]; j < limits[g + 4]; j++, ptV.add2(v1, ptZ0)) {
           ptZ0.setT(ptV);
-          for (int k = pt0.z; k < pt1.z; k++, ptV.add(v2)) {
-            double dVS = checkSpecialVoxel(ptA, ptB, ptV);
+          for (int k = limits[g + 2]; k < limits[g + 5]; k++, ptV.add(v2)) {
+            double dVS = checkSpecialVoxel(edge, ptV, p);
             if (Double.isNaN(dVS))
               continue;
             double value = sr - dVS;
@@ -1080,7 +1153,7 @@ class IsoSolventReader extends AtomDataReader {
               int ipt = volumeData.getPointIndex(i, j, k);
               setVoxel(i, j, k, ipt, value);
               if (voxelSource != null)
-                voxelSource[ipt] = -1 - ia;
+                voxelSource[ipt] = -1 - edge.ia;
             }
           }
         }
@@ -1191,7 +1264,7 @@ class IsoSolventReader extends AtomDataReader {
   //    }
   //  }
   //
-  private double checkSpecialVoxel(P3d ptA, P3d ptB, P3d ptV) {
+  private double checkSpecialVoxel(Edge edge, P3d ptV, P3d p) {
     /*
      * Checking here for voxels that are in the situation:
      * 
@@ -1249,6 +1322,12 @@ class IsoSolventReader extends AtomDataReader {
      * (solvent radius - dVS).
      * 
      */
+    P3d ptA = atomXyzTruncated[edge.ia];
+    P3d ptB = atomXyzTruncated[edge.ib];
+    double rAS = rs[edge.ia];
+    double rBS = rs[edge.ib];
+    double rAS2 = rs2[edge.ia];
+    double rBS2 = rs2[edge.ib];
     double dAV = ptA.distance(ptV);
     double dAV2 = ptA.distanceSquared(ptV);
     double f = rAS / dAV;
@@ -1260,7 +1339,7 @@ class IsoSolventReader extends AtomDataReader {
       // If the distance of this point to B is less than the distance
       // of S to B, then we need to check this point
       // to see if we are somewhere in the arc SAB, within the solvent sphere of A
-      return (ptB.distanceSquared(p) >= rBS2 ? Double.NaN : solventDistance(rAS,
+      return (ptB.distanceSquared(p) >= rBS2 ? Double.NaN : solventDistance(edge, rAS,
           rAS2, rBS2, dAV, dAV2, ptB.distanceSquared(ptV)));
     }
     double dBV = ptB.distance(ptV);
@@ -1268,16 +1347,13 @@ class IsoSolventReader extends AtomDataReader {
       // calculate point on solvent sphere bbbb projected through ptV
       p.set(ptB.x + (ptV.x - ptB.x) * f, ptB.y + (ptV.y - ptB.y) * f, ptB.z
           + (ptV.z - ptB.z) * f);
-      return (ptA.distanceSquared(p) >= rAS2 ? Double.NaN : solventDistance(rBS,
+      return (ptA.distanceSquared(p) >= rAS2 ? Double.NaN : solventDistance(edge, rBS,
           rBS2, rAS2, dBV, dBV * dBV, dAV2));
     }
     // not within solvent sphere of A or B
     return Double.NaN;
   }
 
-  private double rAS, rBS, rAS2, rBS2, dAB, dAB2;
-  private double ecosASB2;
-  
   /*
    *         S
    *        /|\
@@ -1288,14 +1364,17 @@ class IsoSolventReader extends AtomDataReader {
    *   A           B
    * 
    */
-  private double solventDistance(double rAS, double rAS2, double rBS2, double dAV,
-                                  double dAV2, double dBV2) {
+  private static double solventDistance(Edge edge, double rAS, double rAS2,
+                                        double rBS2, double dAV, double dAV2,
+                                        double dBV2) {
+    double dAB = edge.d;
+    double dAB2 = edge.d2;
     double angleVAB = Math.acos((dAV2 + dAB2 - dBV2) / (2 * dAV * dAB));
     double angleSAB = Math.acos((rAS2 + dAB2 - rBS2) / (2 * rAS * dAB));
     double dVS2 = (rAS2 + dAV2 - 2 * rAS * dAV * Math.cos(angleSAB - angleVAB));
     double dVS = Math.sqrt(dVS2);
     // check for voxel in trough
-    return (ecosASB2 < (rAS2 + dVS2 - dAV * dAV) / (dVS * rAS) ? (double) dVS : Double.NaN);
+    return (edge.cosASB2 < (rAS2 + dVS2 - dAV * dAV) / (dVS * rAS) ? (double) dVS : Double.NaN);
   }
 
   ///////////////// debugging ////////////////
@@ -61,6 +61,7 @@ class MrcBinaryReader extends MapFileReader {
     if (params.thePlane == null)
       params.insideOut = !params.insideOut;
     allowSigma = true;
+    isFloatData = true;
   }
   
 
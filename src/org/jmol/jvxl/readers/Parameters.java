@@ -253,6 +253,7 @@ public class Parameters {
     logMessages = Logger.debugging;
     mapLattice = null;
     mep_calcType = -1;
+    mep_accuracy = 0;
     minSet = 0;
     modelIndex = -1;
     modelInvRotation = null;
@@ -659,6 +660,11 @@ public class Parameters {
   double mep_ptsPerAngstrom = 3d;
   double mep_marginAngstroms = 1d; // may have to adjust this
   public int mep_calcType = -1;
+  /**
+   * for mapping, the largest atom-cluster radius/distance ratio to approximate
+   * (MEP 0 0.3, for example); 0 for an exact sum over atoms
+   */
+  public double mep_accuracy = 0;
 
   void setMep(double[] charges, boolean isMLP) {
     dataType = (isMLP ? SURFACE_MLP : SURFACE_MEP);
@@ -860,6 +866,7 @@ public class Parameters {
   public double extendGrid;
   public boolean isMapped;
   public boolean showTiming;
+  public boolean multiProcessor = true;
   public double pointSize;
   public P3d[] probes;
   public boolean isModelConnected;
@@ -837,6 +837,11 @@ public class SurfaceGenerator {
       return true;
     }
 
+    if ("mepAccuracy" == propertyName) {
+      params.mep_accuracy = ((Number) value).doubleValue();
+      return true;
+    }
+
     if ("mep" == propertyName) {
       params.setMep((double[]) value, false); // mep charges
       processState();
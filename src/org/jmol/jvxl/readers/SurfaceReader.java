@@ -834,7 +834,10 @@ public abstract class SurfaceReader implements VertexDataServer {
       double min = Double.MAX_VALUE;
       double max = -Double.MAX_VALUE;
       double value;
-      initializeMapping();
+      String mapKey = getCachedMapping();
+      boolean isCached = (mapKey != null && meshData.mapKey != null);
+      if (!isCached)
+        initializeMapping();
       for (int i = meshData.vc; --i >= meshData.mergeVertexCount0;) {
         /* right, so what we are doing here is setting a range within the 
          * data for which we want red-->blue, but returning the actual
@@ -842,7 +845,9 @@ public abstract class SurfaceReader implements VertexDataServer {
          * the key to making the JVXL contours work.
          *  
          */
-        if (params.colorBySets) {
+        if (isCached) {
+          value = meshData.vvs[i];
+        } else if (params.colorBySets) {
           value = meshData.vertexSets[i];
         } else if (params.colorByPhase) {
           value = getPhase(meshData.vs[i]);
@@ -864,7 +869,14 @@ public abstract class SurfaceReader implements VertexDataServer {
       }
       if (params.rangeSelected && minMax == null)
         minMax = new double[] { min, max };
-      finalizeMapping();
+      if (!isCached) {
+        finalizeMapping();
+        if (mapKey != null) {
+          meshData.mapKey = mapKey;
+          meshDataServer.fillMeshData(meshData,
+              MeshData.MODE_PUT_MAPPED_VALUES, null);
+        }
+      }
     }
     params.setMapRanges(this, true);
     jvxlData.mappedDataMin = params.mappedDataMin;
@@ -884,6 +896,41 @@ public abstract class SurfaceReader implements VertexDataServer {
       meshDataServer.fillMeshData(meshData, MeshData.MODE_PUT_SETS, null);
   }
 
+  /**
+   * Check with the mesh data server for vertex values from an earlier
+   * identical mapping onto these same vertices. If found, they have been put
+   * into meshData.vvs, and meshData.mapKey is still set.
+   * 
+   * @return the key for this mapping, or null if it is not cacheable
+   */
+  private String getCachedMapping() {
+    meshData.mapKey = null;
+    meshData.mapCheck = null;
+    if (meshDataServer == null || params.colorBySets || params.colorByPhase)
+      return null;
+    String key = getMapKey();
+    if (key == null)
+      return null;
+    meshData.mapKey = key;
+    meshDataServer.fillMeshData(meshData, MeshData.MODE_GET_MAPPED_VALUES,
+        null);
+    if (meshData.mapKey != null)
+      Logger.info("using cached vertex values for " + key);
+    return key;
+  }
+
+  /**
+   * Readers whose vertex values depend on only a small amount of data can
+   * return a key here and set meshData.mapCheck to that data, allowing the
+   * values to be reused when the same mapping is applied again to the same
+   * surface.
+   * 
+   * @return key or null
+   */
+  protected String getMapKey() {
+    return null;
+  }
+
   private void colorData() {
 
     double[] vertexValues = meshData.vvs;
@@ -33,6 +33,7 @@ import javajs.util.V3d;
 
 import org.jmol.api.Interface;
 import org.jmol.atomdata.AtomData;
+import org.jmol.jvxl.data.MeshData;
 import javajs.util.BS;
 import org.jmol.quantum.NciCalculation;
 import org.jmol.util.Logger;
@@ -51,6 +52,10 @@ abstract class VolumeFileReader extends SurfaceFileReader {
   private boolean getNCIPlanes;
   protected int nData;
   protected boolean readerClosed;
+  /**
+   * file values are 32-bit or smaller, so mapped data lose nothing as float
+   */
+  protected boolean isFloatData;
 
 
   VolumeFileReader() {}
@@ -265,6 +270,7 @@ abstract class VolumeFileReader extends SurfaceFileReader {
      */
 
     initializeSurfaceData();
+    float[][] voxelFloats = null;
     if (isProgressive && !isMapData || isJvxl) {
       nDataPoints = volumeData.setVoxelCounts(nPointsX, nPointsY, nPointsZ);
       voxelData = null;
@@ -289,19 +295,34 @@ abstract class VolumeFileReader extends SurfaceFileReader {
           skipVoxels(nSkipZ);
       }
     } else {
-      voxelData = AU.newDouble3(nPointsX, -1);
       // Note downsampling not allowed for JVXL files
       // This filling of voxelData should only be needed
       // for mapped data.
-
+      // For mapped data, only the planes bracketing a surface vertex are kept;
+      // the rest are read past, so a large map does not have to fit in memory.
+      // Natively 32-bit mapped data are kept as flat float planes.
+      BS bsPlanes = (isMapData ? getMappedPlanes() : null);
+      boolean asFloat = (isMapData && isFloatData);
+      voxelData = (asFloat ? null : AU.newDouble3(nPointsX, -1));
+      voxelFloats = (asFloat ? new float[nPointsX][] : null);
       for (int x = 0; x < nPointsX; ++x) {
-        double[][] plane = AU.newDouble2(nPointsY);
-        voxelData[x] = plane;
-        for (int y = 0; y < nPointsY; ++y) {
-          double[] strip = new double[nPointsZ];
-          plane[y] = strip;
-          for (int z = 0; z < nPointsZ; ++z) {
-            strip[z] = recordData(getNextVoxelValue());
+        boolean isNeeded = (bsPlanes == null || bsPlanes.get(x));
+        double[][] plane = (isNeeded && !asFloat ? AU.newDouble2(nPointsY) : null);
+        float[] planeF = (isNeeded && asFloat ? new float[nPointsY * nPointsZ] : null);
+        if (asFloat)
+          voxelFloats[x] = planeF;
+        else
+          voxelData[x] = plane;
+        for (int y = 0, ptyz = 0; y < nPointsY; ++y) {
+          double[] strip = (plane == null ? null : new double[nPointsZ]);
+          if (strip != null)
+            plane[y] = strip;
+          for (int z = 0; z < nPointsZ; ++z, ++ptyz) {
+            double v = recordData(getNextVoxelValue());
+            if (strip != null)
+              strip[z] = v;
+            else if (planeF != null)
+              planeF[ptyz] = (float) v;
             if (nSkipX != 0)
               skipVoxels(nSkipX);
           }
@@ -314,6 +335,28 @@ abstract class VolumeFileReader extends SurfaceFileReader {
       //Jvxl getNextVoxelValue records the data read on its own.
     }
     volumeData.setVoxelDataAsArray(voxelData);
+    if (voxelFloats != null)
+      volumeData.setVoxelDataAsFloat(voxelFloats);
+  }
+
+  /**
+   * When coloring an existing surface, only the x planes bracketing its
+   * vertices will be interpolated. Periodic maps wrap, so they still need
+   * everything.
+   * 
+   * @return planes to keep, or null for all of them
+   */
+  private BS getMappedPlanes() {
+    if (params.isPeriodic || params.mapLattice != null)
+      return null;
+    if (meshDataServer != null)
+      meshDataServer.fillMeshData(meshData, MeshData.MODE_GET_VERTICES, null);
+    if (meshData.vs == null || meshData.vc == 0)
+      return null;
+    BS bs = volumeData.getVertexPlanes(meshData.vs, meshData.vc);
+    Logger.info("VolumeFileReader: keeping " + bs.cardinality() + " of "
+        + nPointsX + " planes for mapping");
+    return bs;
   }
 
   // For a progressive reader, we need to build two planes at a time
@@ -353,6 +396,7 @@ abstract class VolumeFileReader extends SurfaceFileReader {
     if (iPlaneNCI == 0) {
       qpc = (NciCalculation) Interface
           .getOption("quantum.NciCalculation", (Viewer) sg.atomDataServer, null);
+      qpc.multiProcessor = params.multiProcessor;
       AtomData atomData = new AtomData();
       atomData.modelIndex = -1; // -1 here means fill ALL atoms; any other
       // means "this model only"
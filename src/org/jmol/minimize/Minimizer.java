@@ -37,6 +37,7 @@ import org.jmol.modelset.Bond;
 import org.jmol.modelset.ModelSet;
 import org.jmol.script.T;
 import org.jmol.thread.JmolThread;
+import org.jmol.thread.ParallelTasks;
 import org.jmol.util.BSUtil;
 import org.jmol.util.Edge;
 import org.jmol.util.Escape;
@@ -67,6 +68,13 @@ public class Minimizer {
   public MinBond[] minBonds;
   public MinAngle[] minAngles;
   public MinTorsion[] minTorsions;
+
+  /**
+   * MMFF typing results for recently minimized atom sets, most recent first,
+   * each keyed by an exact description of its connectivity; maintained by
+   * ForceFieldMMFF
+   */
+  public Lst<Object[]> mmffTypeCache;
   
   public BS bsMinFixed;
   private int ac;
@@ -77,6 +85,24 @@ public class Minimizer {
   private double crit = 1e-3;
 
   public String units = "kJ/mol";
+
+  /**
+   * VDW and ES terms only for atoms within this distance, in Angstroms, or
+   * all pairs if 0; the terms are switched smoothly to zero over the last
+   * Angstrom
+   */
+  public double nonbondedCutoff;
+
+  /**
+   * steepest descent (the default), Polak-Ribiere conjugate gradient, or
+   * limited-memory BFGS
+   */
+  public final static String[] METHODS = { "SD", "CG", "LBFGS" };
+  public final static int METHOD_SD = 0;
+  public final static int METHOD_CG = 1;
+  public final static int METHOD_LBFGS = 2;
+
+  private int method = METHOD_SD;
   
   private ForceField pFF;
   private String ff = "UFF";
@@ -88,6 +114,12 @@ public class Minimizer {
   private BS bsBasis;
   
   private boolean isSilent;
+
+  /**
+   * set for one of several models being minimized at once by minimizeModels;
+   * setup only, with the force-field energy evaluated in a single thread
+   */
+  boolean isBatch;
  
   public Minimizer() {
     id = (++staticID) * 100;
@@ -102,6 +134,8 @@ public class Minimizer {
         "constraint" + // 30
         "fixed     " + // 40
         "stop      " + // 50
+        "cutoff    " + // 60
+        "method    " + // 70
         "vwr    "
         ).indexOf(propertyName)) {
     case 0:
@@ -132,12 +166,38 @@ public class Minimizer {
       stopMinimization(true);
       break;
     case 60:
+      double cutoff = Math.max(0, ((Double) value).doubleValue());
+      if (cutoff != nonbondedCutoff) {
+        // force field must be set up again
+        stopMinimization(false);
+        nonbondedCutoff = cutoff;
+        bsSelected = null;
+      }
+      break;
+    case 70:
+      int m = getMethod((String) value);
+      if (m >= 0)
+        method = m;
+      break;
+    case 80:
       vwr = (Viewer) value;
       break;
     }
     return this;
   }
 
+  /**
+   * @param name
+   *        SD, CG, or LBFGS, case-insensitive
+   * @return index into METHODS, or -1 if not found
+   */
+  public static int getMethod(String name) {
+    for (int i = METHODS.length; --i >= 0;)
+      if (METHODS[i].equalsIgnoreCase(name))
+        return i;
+    return -1;
+  }
+
   public boolean minimize(int steps, double crit, BS bsSelected, BS bsFixed,
                           BS bsBasis, int flags, String ff)
       throws JmolAsyncException {
@@ -249,9 +309,13 @@ public class Minimizer {
           constraints.get(i).set(steps, bsAtoms, atomMap);
 
       pFF.setConstraints(this);
+      // symmetry-based minimization adjusts positions after each move
+      pFF.setMethod(bsBasis == null ? method : METHOD_SD);
 
       // minimize and store values
 
+      if (isBatch)
+        return true;
       if (steps <= 0)
         getEnergyOnly();
       else if (isSilent || !vwr.useMinimizationThread())
@@ -343,6 +407,7 @@ public class Minimizer {
     bsSelected = null;
     constraints = null;
     constraintMap = null;
+    mmffTypeCache = null;
     pFF = null;
   }
   
@@ -761,6 +826,138 @@ public class Minimizer {
     endMinimization(true);
   }
   
+  /////////////////////// batch minimization ///////////////////////
+
+  /**
+   * Minimize each model of a set independently, for example the conformers of
+   * a multi-model SDF file. Each model gets its own Minimizer, with its own
+   * force field and MinAtom arrays, using this Minimizer's method and cutoff.
+   * Force fields are set up one model at a time; the minimizations are then
+   * run on the ParallelTasks pool, and all coordinates are written back to the
+   * atoms in one pass at the end. Atoms fixed with MINIMIZE FIX or SET
+   * motionFixed... are held in place within their own models; constraints and
+   * symmetry are not used.
+   * 
+   * Each model's final energy is saved as model info "minimizationEnergy".
+   * 
+   * @param steps
+   * @param crit
+   * @param bsSelected
+   *        atoms to minimize, in any number of models
+   * @param ff
+   * @return number of models minimized
+   * @throws JmolAsyncException
+   */
+  public int minimizeModels(int steps, double crit, BS bsSelected, String ff)
+      throws JmolAsyncException {
+    if (minimizing)
+      return 0;
+    minimizing = true;
+    try {
+      return minimizeModelsBatch(steps, crit, bsSelected, ff);
+    } finally {
+      minimizing = false;
+    }
+  }
+
+  private int minimizeModelsBatch(int steps, double crit, BS bsSelected,
+                                  String ff)
+      throws JmolAsyncException {
+    ModelSet ms = vwr.ms;
+    BS bsModels = ms.getModelBS(bsSelected, false);
+    BS bsFixedAll = BSUtil.copy(vwr.slm.getMotionFixedAtoms());
+    if (bsFixedDefault != null)
+      bsFixedAll.or(bsFixedDefault);
+    final Lst<Minimizer> list = new Lst<Minimizer>();
+    for (int i = bsModels.nextSetBit(0); i >= 0; i = bsModels
+        .nextSetBit(i + 1)) {
+      BS bsModel = ms.getModelAtomBitSetIncludingDeleted(i, false);
+      BS bs = BSUtil.copy(bsSelected);
+      bs.and(bsModel);
+      BS bsFixed = BSUtil.copy(bsFixedAll);
+      bsFixed.and(bsModel);
+      bs.andNot(bsFixed);
+      if (bs.isEmpty())
+        continue;
+      if (ff.startsWith("MMFF")
+          && bs.cardinality() > vwr.getInt(T.minimizationmaxatoms)) {
+        report(" model " + ms.getModelNumberDotted(i)
+            + " has too many atoms for minimization", false);
+        continue;
+      }
+      Minimizer m = new Minimizer();
+      m.vwr = vwr;
+      m.method = method;
+      m.nonbondedCutoff = nonbondedCutoff;
+      m.isBatch = true;
+      if (m.minimize(steps, crit, bs, bsFixed, null, Viewer.MIN_SILENT
+          | (bsFixed.isEmpty() ? 0 : Viewer.MIN_HAVE_FIXED), ff))
+        list.addLast(m);
+    }
+    final int n = list.size();
+    if (n == 0)
+      return 0;
+    BS bsTaint = new BS();
+    bsAtoms = new BS();
+    for (int i = 0; i < n; i++) {
+      Minimizer m = list.get(i);
+      bsAtoms.or(m.bsAtoms);
+      if (m.bsTaint != null)
+        bsTaint.or(m.bsTaint);
+    }
+    if (!bsTaint.isEmpty())
+      vwr.stm.saveCoordinates("minimize", bsTaint);
+    vwr.setIntProperty("_minimizationStep", 0);
+    vwr.setFloatProperty("_minimizationEnergy", 0);
+    vwr.setFloatProperty("_minimizationEnergyDiff", 0);
+    vwr.setStringProperty("_minimizationStatus", "starting");
+    vwr.notifyMinimizationStatus();
+    final int nTasks = ParallelTasks.getTaskCount(vwr.getBoolean(T.multiprocessor), n, 1);
+    ParallelTasks.runTasks(n, nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        for (int i = i0; i < i1; i++)
+          list.get(i).minimizeBatchModel(nTasks > 1);
+      }
+    });
+    int nFailed = 0;
+    for (int i = 0; i < n; i++) {
+      Minimizer m = list.get(i);
+      if (m.pFF.detectExplosion()) {
+        nFailed++;
+        continue;
+      }
+      for (int j = (m.steps > 0 ? m.ac : 0); --j >= 0;) {
+        MinAtom minAtom = m.minAtoms[j];
+        if (m.bsFixed == null || !m.bsFixed.get(minAtom.atom.i))
+          minAtom.atom.set(minAtom.coord[0], minAtom.coord[1], minAtom.coord[2]);
+      }
+      ms.setInfo(m.minAtoms[0].atom.mi, "minimizationEnergy",
+          Double.valueOf(m.pFF.toUserUnits(m.pFF.getEnergy())));
+    }
+    vwr.refreshMeasures(false);
+    report(" minimized " + (n - nFailed) + " model" + (n - nFailed == 1 ? "" : "s")
+        + (nFailed == 0 ? "" : "; " + nFailed + " failed"), false);
+    vwr.setStringProperty("_minimizationStatus", nFailed == 0 ? "done" : "failed");
+    vwr.notifyMinimizationStatus();
+    vwr.refresh(Viewer.REFRESH_SYNC_MASK, "minimize:done");
+    return n - nFailed;
+  }
+
+  /**
+   * Run one model of a batch to completion, without touching the viewer.
+   * 
+   * @param isConcurrent
+   *        true if other models are being minimized at the same time, in
+   *        which case the energy terms are not also split among threads
+   */
+  void minimizeBatchModel(boolean isConcurrent) {
+    pFF.setConcurrent(isConcurrent);
+    pFF.steepestDescentInitialize(steps, crit, trustRadius);
+    while (pFF.steepestDescentTakeNSteps(1, false)) {
+    }
+  }
+
   public void report(String msg, boolean isEcho) {
     if (isSilent)
       Logger.info(msg);
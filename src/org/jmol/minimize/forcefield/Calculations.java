@@ -26,6 +26,8 @@ package org.jmol.minimize.forcefield;
 
 import java.util.Map;
 
+import org.jmol.bspt.Bspt;
+import org.jmol.bspt.CubeIterator;
 import org.jmol.minimize.MMConstraint;
 import org.jmol.minimize.MinAngle;
 import org.jmol.minimize.MinAtom;
@@ -33,6 +35,9 @@ import org.jmol.minimize.MinBond;
 import org.jmol.minimize.MinObject;
 import org.jmol.minimize.MinTorsion;
 import org.jmol.minimize.Util;
+import org.jmol.script.T;
+import org.jmol.thread.ParallelTasks;
+import org.jmol.util.Point3fi;
 
 import javajs.util.AU;
 import javajs.util.BS;
@@ -101,6 +106,9 @@ abstract class Calculations {
     bondCount = minBonds.length;
     angleCount = minAngles.length;
     torsionCount = minTorsions.length;
+    cutoff = ff.minimizer.nonbondedCutoff;
+    if (cutoff > 0)
+      bsPairCheck = new BS[] { new BS(), new BS() };
     setConstraints(constraints);
   }
 
@@ -110,6 +118,26 @@ abstract class Calculations {
 
   abstract double compute(int iType, Object[] dataIn);
 
+  /**
+   * @return a new calculation of the same kind for the same atoms, with its
+   *         own Calculation objects and work vectors, for use by one task of
+   *         energyFullParallel
+   */
+  abstract Calculations getWorker();
+
+  /**
+   * share the term lists of the calculation this is a worker for
+   * 
+   * @param c
+   * @return this
+   */
+  Calculations setWorker(Calculations c) {
+    calculations = c.calculations;
+    bsPairCheck = c.bsPairCheck;
+    forces = new double[ac * 3];
+    return this;
+  }
+
   public void setConstraints(Lst<MMConstraint> constraints) {
     if (constraints == null || constraints.isEmpty())
       return;
@@ -132,6 +160,13 @@ abstract class Calculations {
   }
 
   void addForce(V3d v, int i, double dE) {
+    if (forces != null) {
+      i *= 3;
+      forces[i] += v.x * dE;
+      forces[i + 1] += v.y * dE;
+      forces[i + 2] += v.z * dE;
+      return;
+    }
     minAtoms[i].force[0] += v.x * dE;
     minAtoms[i].force[1] += v.y * dE;
     minAtoms[i].force[2] += v.z * dE;
@@ -170,6 +205,14 @@ abstract class Calculations {
 
   protected void pairSearch(Lst<Object[]> calc1, Calculation pc1, 
                             Lst<Object[]> calc2, Calculation pc2) {
+    if (cutoff > 0) {
+      pairList1 = calc1;
+      pairCalc1 = pc1;
+      pairList2 = calc2;
+      pairCalc2 = pc2;
+      pairSearchWithin();
+      return;
+    }
     for (int i = 0; i < ac - 1; i++) {
       BS bsVdw = minAtoms[i].bsVdw;
       for (int j = bsVdw.nextSetBit(0); j >= 0; j = bsVdw.nextSetBit(j + 1)) {
@@ -180,6 +223,154 @@ abstract class Calculations {
     }
   }
 
+  ////////////// nonbonded cutoff //////////////
+
+  /**
+   * The pair lists include pairs out to the cutoff plus this margin, so they
+   * need not be made again until some atom has moved half this far.
+   */
+  private final static double SKIN = 1.0;
+
+  /**
+   * VDW and ES energies are switched smoothly to zero over this last part of
+   * the cutoff distance, so that the energy and its gradient stay continuous
+   * for the line search and the convergence test.
+   */
+  private final static double SWITCH_WIDTH = 1.0;
+
+  /**
+   * from Minimizer.nonbondedCutoff; 0 for all pairs
+   */
+  double cutoff;
+
+  private Lst<Object[]> pairList1, pairList2;
+  private Calculation pairCalc1, pairCalc2;
+
+  /**
+   * the VDW and ES pairs, by list index, that were close enough to the cutoff
+   * when listed that they might now be in the switching region or beyond it
+   */
+  private BS[] bsPairCheck;
+
+  /**
+   * atom coordinates when the pair lists were last made
+   */
+  private double[] pairCoords;
+
+  /**
+   * Make a Verlet list of the nonbonded pairs within the cutoff plus SKIN,
+   * using a Bspt of the current atom positions. Pairs are listed in the same
+   * order as for all pairs.
+   */
+  private void pairSearchWithin() {
+    pairList1.clear();
+    if (pairList2 != null)
+      pairList2.clear();
+    bsPairCheck[0].clearAll();
+    bsPairCheck[1].clearAll();
+    if (pairCoords == null)
+      pairCoords = new double[ac * 3];
+    Bspt bspt = new Bspt(3, 0);
+    Point3fi[] pts = new Point3fi[ac];
+    for (int i = 0, j = 0; i < ac; i++) {
+      double[] c = minAtoms[i].coord;
+      bspt.addTuple(pts[i] = Point3fi.new4(c[0], c[1], c[2], i));
+      pairCoords[j++] = c[0];
+      pairCoords[j++] = c[1];
+      pairCoords[j++] = c[2];
+    }
+    CubeIterator iter = bspt.allocateCubeIterator();
+    BS bsNear = new BS();
+    BS bsFar = new BS();
+    // until the next search, no pair distance can change by more than SKIN
+    double rSafe = cutoff - SWITCH_WIDTH - SKIN;
+    double d2Safe = (rSafe > 0 ? rSafe * rSafe : 0);
+    for (int i = 0; i < ac - 1; i++) {
+      BS bsVdw = minAtoms[i].bsVdw;
+      iter.initialize(pts[i], cutoff + SKIN, false);
+      while (iter.hasMoreElements()) {
+        int j = ((Point3fi) iter.nextElement()).i;
+        if (j > i && bsVdw.get(j)) {
+          bsNear.set(j);
+          if (iter.foundDistance2() >= d2Safe)
+            bsFar.set(j);
+        }
+      }
+      for (int j = bsNear.nextSetBit(0); j >= 0; j = bsNear.nextSetBit(j + 1)) {
+        addPair(0, pairList1, pairCalc1, i, j, bsFar.get(j));
+        if (pairCalc2 != null)
+          addPair(1, pairList2, pairCalc2, i, j, bsFar.get(j));
+      }
+      bsNear.clearAll();
+      bsFar.clearAll();
+    }
+    iter.release();
+  }
+
+  private void addPair(int k, Lst<Object[]> list, Calculation pc, int i, int j,
+                       boolean isFar) {
+    int n = list.size();
+    pc.setData(list, i, j, 0);
+    if (isFar && list.size() > n)
+      bsPairCheck[k].set(n);
+  }
+
+  /**
+   * Make the pair lists again if any atom has moved more than half of SKIN
+   * since they were made. Called at the start of each full energy
+   * calculation.
+   */
+  void checkPairList() {
+    if (pairCoords == null)
+      return;
+    double d2Max = SKIN * SKIN / 4;
+    for (int i = 0, j = 0; i < ac; i++, j += 3) {
+      double[] c = minAtoms[i].coord;
+      double dx = c[0] - pairCoords[j];
+      double dy = c[1] - pairCoords[j + 1];
+      double dz = c[2] - pairCoords[j + 2];
+      if (dx * dx + dy * dy + dz * dz > d2Max) {
+        pairSearchWithin();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Listed pairs that are near the cutoff are scaled by the switching function
+   * 
+   * S = (c2 - r2)^2 (c2 + 2 r2 - 3 on2) / (c2 - on2)^3
+   * 
+   * between on = cutoff - SWITCH_WIDTH and the cutoff, c, and are skipped
+   * beyond it, so that the energy does not depend upon when the list was made
+   * and has no step at the cutoff. S and dS/dr go to 1 and 0 at on and to 0
+   * and 0 at c. Gradients are taken numerically from the energy, so they are
+   * switched as well.
+   * 
+   * @param iType
+   * @param i
+   *        list index
+   * @param dataIn
+   * @return 1 for a term that is not switched, 0 for a pair to be skipped, or
+   *         the switching factor
+   */
+  private double getCutoffScale(int iType, int i, Object[] dataIn) {
+    if (bsPairCheck == null || iType != CALC_VDW && iType != CALC_ES
+        || !bsPairCheck[iType == CALC_VDW ? 0 : 1].get(i))
+      return 1;
+    int[] ij = (int[]) dataIn[0];
+    double r2 = Util.distance2(minAtoms[ij[0]].coord, minAtoms[ij[1]].coord);
+    double c2 = cutoff * cutoff;
+    if (r2 >= c2)
+      return 0;
+    double on = Math.max(0, cutoff - SWITCH_WIDTH);
+    double on2 = on * on;
+    if (r2 <= on2)
+      return 1;
+    double d = c2 - on2;
+    return (c2 - r2) * (c2 - r2) * (c2 + 2 * r2 - 3 * on2) / (d * d * d);
+  }
+
   private double calc(int iType, boolean gradients, boolean canConstrain) {
     logging = loggingEnabled && !silent;
     this.gradients = gradients;
@@ -190,8 +381,12 @@ abstract class Calculations {
       return 0;
     if (logging)
       appendLogData(getDebugHeader(iType));
-    for (int ii = 0; ii < nCalc; ii++)
-      energy += compute(iType, calculations[iType].get(ii));
+    for (int ii = 0; ii < nCalc; ii++) {
+      Object[] dataIn = calcs.get(ii);
+      double f = getCutoffScale(iType, ii, dataIn);
+      if (f > 0)
+        energy += f * compute(iType, dataIn);
+    }
     if (logging)
       appendLogData(getDebugFooter(iType, energy));
     if (canConstrain && haveConstraints && constraintsByType[iType] != null)
@@ -199,6 +394,134 @@ abstract class Calculations {
     return energy;
   }
 
+  ////////////// parallel evaluation //////////////
+
+  /**
+   * smallest number of terms worth handing to another thread
+   */
+  private final static int MIN_TERMS_PER_TASK = 1000;
+
+  /**
+   * all terms, in the order ForceField.energyFull adds them
+   */
+  private final static int[] fullTypes = { CALC_DISTANCE, CALC_ANGLE,
+      CALC_TORSION, CALC_STRETCH_BEND, CALC_OOP, CALC_VDW, CALC_ES };
+
+  /**
+   * workers[0] is this calculation; the others are created as needed
+   */
+  private Calculations[] workers;
+
+  /**
+   * a worker's gradient accumulator, by 3 * atom index + x, y, or z; null for
+   * the main calculation, which adds to minAtoms[].force directly
+   */
+  private double[] forces;
+
+  /**
+   * @return the number of tasks that energyFullParallel would use; 1 when
+   *         logging, which must be in order, or when there are too few terms
+   */
+  int getTaskCount() {
+    if (loggingEnabled && !silent)
+      return 1;
+    return ParallelTasks.getTaskCount(
+        ff.minimizer.vwr.getBoolean(T.multiprocessor), getTermCount(),
+        MIN_TERMS_PER_TASK);
+  }
+
+  private int getTermCount() {
+    int n = 0;
+    for (int k = fullTypes.length; --k >= 0;) {
+      Lst<Object[]> calcs = calculations[fullTypes[k]];
+      if (calcs != null)
+        n += calcs.size();
+    }
+    return n;
+  }
+
+  /**
+   * All terms, split into contiguous blocks across all term lists. Each block
+   * is evaluated by its own worker, with its own gradient accumulator, and the
+   * energies and gradients are then added up in block order, so the result
+   * does not depend upon thread timing. Constraints are added at the end.
+   * 
+   * @param gradients
+   * @param nTasks
+   *        from getTaskCount()
+   * @return total energy
+   */
+  double energyFullParallel(boolean gradients, int nTasks) {
+    if (workers == null || workers.length < nTasks) {
+      Calculations[] w = new Calculations[nTasks];
+      w[0] = this;
+      for (int i = 1; i < nTasks; i++)
+        w[i] = (workers != null && i < workers.length ? workers[i]
+            : getWorker().setWorker(this));
+      workers = w;
+    }
+    final Calculations[] workers = this.workers;
+    for (int t = 0; t < nTasks; t++) {
+      Calculations c = workers[t];
+      c.gradients = gradients;
+      c.logging = false;
+      c.isPreliminary = isPreliminary;
+      if (gradients && t > 0)
+        for (int i = c.forces.length; --i >= 0;)
+          c.forces[i] = 0;
+    }
+    final double[] energies = new double[nTasks];
+    nTasks = ParallelTasks.runTasks(getTermCount(), nTasks,
+        new ParallelTasks.Block() {
+          @Override
+          public void run(int task, int i0, int i1) {
+            energies[task] = workers[task].computeRange(i0, i1);
+          }
+        });
+    double energy = 0;
+    for (int t = 0; t < nTasks; t++) {
+      energy += energies[t];
+      if (gradients && t > 0) {
+        double[] f = workers[t].forces;
+        for (int i = 0, j = 0; i < ac; i++, j += 3) {
+          double[] force = minAtoms[i].force;
+          force[0] += f[j];
+          force[1] += f[j + 1];
+          force[2] += f[j + 2];
+        }
+      }
+    }
+    if (haveConstraints)
+      for (int type = CALC_DISTANCE; type <= CALC_TORSION; type++)
+        if (constraintsByType[type] != null)
+          energy += constraintEnergy(type);
+    return energy;
+  }
+
+  /**
+   * @param i0
+   *        first term, counting through all lists in fullTypes order
+   * @param i1
+   *        last term, exclusive
+   * @return the energy of these terms
+   */
+  double computeRange(int i0, int i1) {
+    double energy = 0;
+    for (int k = 0, n0 = 0; k < fullTypes.length && n0 < i1; k++) {
+      int iType = fullTypes[k];
+      Lst<Object[]> calcs = calculations[iType];
+      int n = (calcs == null ? 0 : calcs.size());
+      for (int i = Math.max(i0 - n0, 0), iMax = Math.min(i1 - n0, n); i < iMax; i++) {
+        Object[] dataIn = calcs.get(i);
+        double f = getCutoffScale(iType, i, dataIn);
+        if (f > 0)
+          energy += f * compute(iType, dataIn);
+      }
+      n0 += n;
+    }
+    return energy;
+  }
+
   double energyStrBnd(@SuppressWarnings("unused") boolean gradients) {
     return 0.0d;
   }
@@ -70,6 +70,12 @@ class CalculationsMMFF extends Calculations {
     //posCalc = new PositionCalc();
   }
   
+  @Override
+  Calculations getWorker() {
+    return new CalculationsMMFF(ff, ffParams, minAtoms, minBonds, minAngles,
+        minTorsions, null);
+  }
+
   @Override
   String getUnits() {
     return "kcal"; 
@@ -90,6 +90,12 @@ class CalculationsUFF extends Calculations {
     //esCalc = new ESCalc();
   }
 
+  @Override
+  Calculations getWorker() {
+    return new CalculationsUFF(ff, ffParams, minAtoms, minBonds, minAngles,
+        minTorsions, null);
+  }
+
   @Override
   String getUnits() {
     return "kJ";
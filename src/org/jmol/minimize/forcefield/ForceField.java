@@ -96,6 +96,11 @@ abstract public class ForceField {
   Minimizer minimizer;
   private int nth = 10;
 
+  /**
+   * true when other force fields are running on the ParallelTasks pool
+   */
+  private boolean isConcurrent;
+
   abstract public void clear();
   abstract public boolean setModel(BS bsElements, int elemnoMax) throws JmolAsyncException;
   
@@ -140,7 +145,7 @@ abstract public class ForceField {
     Logger.info(s);
     calc.getConstraintList();
     if (calc.loggingEnabled)
-      calc.appendLogData(calc.getAtomList("S T E E P E S T   D E S C E N T"));
+      calc.appendLogData(calc.getAtomList(methodTitles[method]));
     dE = 0;
     calc.setPreliminary(stepMax > 0);
     recalculateEnergy();
@@ -172,7 +177,11 @@ abstract public class ForceField {
       for (int i = 0; i < minAtomCount; i++)
         if (bsMinFixed == null || !bsMinFixed.get(i))
           setForcesUsingNumericalDerivative(minAtoms[i], ENERGY);
-      linearSearch(doUpdateAtoms);
+      boolean isRestart = false;
+      if (method == Minimizer.METHOD_SD)
+        linearSearch(doUpdateAtoms);
+      else
+        isRestart = !directedSearch();
 
       calc.setSilent(false);
 
@@ -181,7 +190,8 @@ abstract public class ForceField {
 
       double e1 = energyFull(false, false);
       dE = e1 - e0;
-      boolean done = Util.isNear3(e1, e0, criterion);
+      // a failed CG or L-BFGS search is tried again along the gradient
+      boolean done = !isRestart && Util.isNear3(e1, e0, criterion);
 
       // note that for pseudo-periodic systems 
       // such as =ams/marcosite 1 {444 666 1}
@@ -201,7 +211,7 @@ abstract public class ForceField {
           calc.appendLogData(calc.getAtomList("F I N A L  G E O M E T R Y"));
         if (done) {
           String s = PT.formatStringD(
-              "\n    " + name + " STEEPEST DESCENT HAS CONVERGED: E = %8.5f " + minimizer.units + "/mol after " + currentStep + " steps", "f",
+              "\n    " + name + " " + methodNames[method] + " HAS CONVERGED: E = %8.5f " + minimizer.units + "/mol after " + currentStep + " steps", "f",
               toUserUnits(e1));
           calc.appendLogData(s);
           minimizer.report(s, true);
@@ -214,6 +224,8 @@ abstract public class ForceField {
         // this to stay in preliminary mode unless |DE| >= 2 * crit. 
         // It's hard to ever have |DE| NOT >= 2 * crit -- that would be very close to the criterion.
         // And when that IS the case, why would you want to STAY in preliminary mode? Hmm.
+        if (calc.isPreliminary)
+          resetSearch(); // the energy function is changing
         calc.setPreliminary(isPreliminary = false);
         e0 = energyFull(false, false);
       }
@@ -306,7 +318,12 @@ abstract public class ForceField {
     if (gradients)
       clearForces();
 
-    energy = energyBond(gradients) +
+    calc.checkPairList();
+    int nTasks = (isConcurrent ? 1 : calc.getTaskCount());
+    if (nTasks > 1)
+      energy = calc.energyFullParallel(gradients, nTasks);
+    else
+      energy = energyBond(gradients) +
         energyAngle(gradients)
        + energyTorsion(gradients)
        + energyStretchBend(gradients)
@@ -433,6 +450,256 @@ abstract public class ForceField {
     }
   }
 
+  ////////////// conjugate gradient and L-BFGS /////////////////
+
+  private final static String[] methodNames = { "STEEPEST DESCENT",
+      "CONJUGATE GRADIENT", "L-BFGS" };
+
+  private final static String[] methodTitles = {
+      "S T E E P E S T   D E S C E N T",
+      "C O N J U G A T E   G R A D I E N T", "L - B F G S" };
+
+  /**
+   * number of L-BFGS correction pairs retained
+   */
+  private final static int LBFGS_M = 6;
+
+  /**
+   * one of Minimizer.METHOD_SD, METHOD_CG, or METHOD_LBFGS
+   */
+  private int method;
+
+  /**
+   * gradient, previous gradient, and search direction, 3 per atom
+   */
+  private double[] grad, gradLast, dir;
+
+  /**
+   * true when gradLast and the latest step are valid for the next direction
+   */
+  private boolean haveLast;
+
+  /**
+   * L-BFGS steps s, gradient changes y, and 1/(s.y), with the next pair
+   * going to iHist
+   */
+  private double[][] sHist, yHist;
+  private double[] rhoHist;
+  private int nHist, iHist;
+  private double gamma;
+
+  /**
+   * step length and initial slope of the last CG search
+   */
+  private double alphaLast, slopeLast;
+
+  public void setMethod(int method) {
+    this.method = method;
+    resetSearch();
+  }
+
+  private void resetSearch() {
+    haveLast = false;
+    nHist = iHist = 0;
+  }
+
+  /**
+   * Take one conjugate gradient or L-BFGS step, using the atom forces already
+   * set by numerical derivative. The step length is found by backtracking
+   * from a full L-BFGS step (or from the last CG step) until the energy
+   * decreases sufficiently, with no atom moving further than trustRadius.
+   * 
+   * @return false if no acceptable step was found along a CG or L-BFGS
+   *         direction, in which case the coordinates are unchanged and the next
+   *         direction will be along the gradient
+   */
+  private boolean directedSearch() {
+    int n = minAtomCount * 3;
+    if (grad == null || grad.length != n) {
+      grad = new double[n];
+      gradLast = new double[n];
+      dir = new double[n];
+      haveLast = false;
+    }
+    for (int i = 0, pt = 0; i < minAtomCount; i++) {
+      double[] force = minAtoms[i].force;
+      boolean isFixed = (bsMinFixed != null && bsMinFixed.get(i));
+      for (int j = 0; j < 3; j++, pt++)
+        grad[pt] = (isFixed || !Util.isFinite(force[j]) ? 0 : -force[j]);
+    }
+    boolean isSteepest = !haveLast
+        || (method == Minimizer.METHOD_CG ? setConjugateDirection(n)
+            : setLBFGSDirection(n));
+    double slope = dot(grad, dir, n);
+    if (slope >= 0) {
+      // not downhill
+      isSteepest = true;
+      for (int i = 0; i < n; i++)
+        dir[i] = -grad[i];
+      slope = dot(grad, dir, n);
+      if (slope == 0)
+        return true;
+    }
+    double alpha = (isSteepest ? 0
+        : method == Minimizer.METHOD_CG ? alphaLast * slopeLast / slope : 1);
+    double dMax = 0;
+    for (int i = 0; i < n; i += 3)
+      dMax = Math.max(dMax, dir[i] * dir[i] + dir[i + 1] * dir[i + 1]
+          + dir[i + 2] * dir[i + 2]);
+    double alphaMax = trustRadius / Math.sqrt(dMax);
+    if (alpha <= 0 || alpha > alphaMax)
+      alpha = alphaMax;
+    saveCoordinates();
+    for (int iStep = 0; iStep < 10; iStep++) {
+      moveAlongDirection(alpha);
+      double e = energyFull(false, true);
+      if (e <= e0 + 1e-4 * alpha * slope) {
+        if (iStep == 0 && method == Minimizer.METHOD_CG)
+          alpha = extendStep(alpha, alphaMax, e);
+        setLastStep(n, alpha, slope);
+        return true;
+      }
+      // backtrack to the minimum of the interpolating quadratic, but by
+      // at least half and at most a factor of 10
+      double a = -slope * alpha * alpha / 2 / (e - e0 - slope * alpha);
+      alpha = (Util.isFinite(a) ? Math.max(0.1 * alpha, Math.min(0.5 * alpha, a))
+          : 0.1 * alpha);
+    }
+    restoreCoordinates();
+    resetSearch();
+    return isSteepest;
+  }
+
+  /**
+   * CG depends upon a nearly exact line search, so an accepted first step is
+   * doubled for as long as the energy continues to drop and no atom moves
+   * further than trustRadius.
+   * 
+   * @param alpha
+   * @param alphaMax
+   * @param e energy at alpha
+   * @return the step length taken
+   */
+  private double extendStep(double alpha, double alphaMax, double e) {
+    while (alpha * 2 <= alphaMax) {
+      moveAlongDirection(alpha * 2);
+      double e2 = energyFull(false, true);
+      if (e2 >= e) {
+        moveAlongDirection(alpha);
+        break;
+      }
+      alpha *= 2;
+      e = e2;
+    }
+    return alpha;
+  }
+
+  private void moveAlongDirection(double alpha) {
+    for (int i = 0, pt = 0; i < minAtomCount; i++) {
+      double[] coord = minAtoms[i].coord;
+      double[] c0 = coordSaved[i];
+      for (int j = 0; j < 3; j++, pt++)
+        coord[j] = c0[j] + alpha * dir[pt];
+    }
+  }
+
+  private void setLastStep(int n, double alpha, double slope) {
+    for (int i = 0; i < n; i++)
+      gradLast[i] = grad[i];
+    if (method == Minimizer.METHOD_LBFGS) {
+      if (sHist == null || sHist[0].length != n) {
+        sHist = new double[LBFGS_M][n];
+        yHist = new double[LBFGS_M][n];
+        rhoHist = new double[LBFGS_M];
+      }
+      double[] s = sHist[iHist];
+      for (int i = 0; i < n; i++)
+        s[i] = alpha * dir[i];
+    } else {
+      alphaLast = alpha;
+      slopeLast = slope;
+    }
+    haveLast = true;
+  }
+
+  /**
+   * Polak-Ribiere, restarting along the gradient when beta is negative
+   * 
+   * @param n
+   * @return true if the direction is along the gradient
+   */
+  private boolean setConjugateDirection(int n) {
+    double gg = dot(gradLast, gradLast, n);
+    double gy = 0;
+    for (int i = 0; i < n; i++)
+      gy += grad[i] * (grad[i] - gradLast[i]);
+    double beta = (gg == 0 ? 0 : Math.max(0, gy / gg));
+    for (int i = 0; i < n; i++)
+      dir[i] = -grad[i] + beta * dir[i];
+    return (beta == 0);
+  }
+
+  /**
+   * Complete the last step's correction pair with the change in gradient, then
+   * apply the L-BFGS two-loop recursion to the current gradient.
+   * 
+   * @param n
+   * @return true if the direction is along the gradient
+   */
+  private boolean setLBFGSDirection(int n) {
+    double[] s = sHist[iHist];
+    double[] y = yHist[iHist];
+    double sy = 0, yy = 0;
+    for (int i = 0; i < n; i++) {
+      y[i] = grad[i] - gradLast[i];
+      sy += s[i] * y[i];
+      yy += y[i] * y[i];
+    }
+    if (sy > 1e-10) {
+      // keep only pairs with positive curvature
+      rhoHist[iHist] = 1 / sy;
+      iHist = (iHist + 1) % LBFGS_M;
+      if (nHist < LBFGS_M)
+        nHist++;
+      gamma = sy / yy;
+    }
+    double[] q = dir;
+    for (int i = 0; i < n; i++)
+      q[i] = grad[i];
+    if (nHist == 0) {
+      for (int i = 0; i < n; i++)
+        q[i] = -q[i];
+      return true;
+    }
+    double[] a = new double[LBFGS_M];
+    for (int k = 0, h = iHist; k < nHist; k++) {
+      h = (h + LBFGS_M - 1) % LBFGS_M;
+      double ak = a[h] = rhoHist[h] * dot(sHist[h], q, n);
+      y = yHist[h];
+      for (int i = 0; i < n; i++)
+        q[i] -= ak * y[i];
+    }
+    for (int i = 0; i < n; i++)
+      q[i] *= gamma;
+    for (int k = 0, h = (iHist + LBFGS_M - nHist) % LBFGS_M; k < nHist; k++, h = (h + 1)
+        % LBFGS_M) {
+      double b = a[h] - rhoHist[h] * dot(yHist[h], q, n);
+      s = sHist[h];
+      for (int i = 0; i < n; i++)
+        q[i] += b * s[i];
+    }
+    for (int i = 0; i < n; i++)
+      q[i] = -q[i];
+    return false;
+  }
+
+  private static double dot(double[] a, double[] b, int n) {
+    double d = 0;
+    for (int i = 0; i < n; i++)
+      d += a[i] * b[i];
+    return d;
+  }
+
   private void saveCoordinates() {
     if (coordSaved == null)
       coordSaved = new double[minAtomCount][3];
@@ -512,4 +779,8 @@ abstract public class ForceField {
   public void setNth(int n) {
     nth = n;
   }
+
+  public void setConcurrent(boolean TF) {
+    isConcurrent = TF;
+  }
 }
@@ -25,6 +25,7 @@
 package org.jmol.minimize.forcefield;
 
 import java.io.BufferedReader;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Map;
 
@@ -266,20 +267,124 @@ public class ForceFieldMMFF extends ForceField {
     return calc.setupCalculations();
   }
 
+  @SuppressWarnings("unchecked")
   public boolean setArrays(Atom[] atoms, BS bsAtoms, Bond[] bonds,
                         int rawBondCount, boolean doRound, boolean allowUnknowns) {
     Minimizer m = minimizer;
     // these are original atom-index-based, not minAtom-index based. 
 
+    int[] connectivity = getConnectivity(atoms, bsAtoms, rawBondCount,
+        doRound, allowUnknowns);
+    Object[] cached = getCachedTypes(connectivity);
+    if (cached != null) {
+      rawAtomTypes = (int[]) cached[1];
+      rawBondTypes = (int[]) cached[2];
+      rawMMFF94Charges = (double[]) cached[3];
+      vRings = (Lst<BS>[]) cached[4];
+      return (rawAtomTypes != null);
+    }
     vRings = AU.createArrayOfArrayList(4);
     rawAtomTypes = setAtomTypes(atoms, bsAtoms, m.vwr.getSmilesMatcher(),
         vRings, allowUnknowns);
-    if (rawAtomTypes == null)
-      return false;
-    rawBondTypes = setBondTypes(bonds, rawBondCount, bsAtoms);
-    rawMMFF94Charges = calculatePartialCharges(bonds, rawBondTypes, atoms,
-        rawAtomTypes, bsAtoms, doRound);
-    return true;
+    if (rawAtomTypes != null) {
+      rawBondTypes = setBondTypes(bonds, rawBondCount, bsAtoms);
+      rawMMFF94Charges = calculatePartialCharges(bonds, rawBondTypes, atoms,
+          rawAtomTypes, bsAtoms, doRound);
+    }
+    // failures are cached as well
+    cacheTypes(new Object[] { connectivity, rawAtomTypes, rawBondTypes,
+        rawMMFF94Charges, vRings });
+    return (rawAtomTypes != null);
+  }
+
+  ////////////// atom type cache //////////////
+
+  private final static int TYPE_CACHE_MAX = 8;
+
+  /**
+   * An exact description of everything SMARTS typing, bond typing, and
+   * charges depend upon: the selected atoms and their covalent neighbors, with
+   * element, formal charge, and every bond by index, partner, and order.
+   * Atom and bond array sizes and the setArrays flags are included because
+   * the cached arrays are indexed by raw atom and bond index.
+   * 
+   * @param atoms
+   * @param bsAtoms
+   * @param rawBondCount
+   * @param doRound
+   * @param allowUnknowns
+   * @return connectivity key
+   */
+  private static int[] getConnectivity(Atom[] atoms, BS bsAtoms,
+                                       int rawBondCount, boolean doRound,
+                                       boolean allowUnknowns) {
+    BS bsConnected = BSUtil.copy(bsAtoms);
+    for (int i = bsAtoms.nextSetBit(0); i >= 0; i = bsAtoms.nextSetBit(i + 1)) {
+      Atom a = atoms[i];
+      Bond[] bonds = a.bonds;
+      if (bonds != null)
+        for (int j = bonds.length; --j >= 0;)
+          if (bonds[j].isCovalentNotPartial0())
+            bsConnected.set(bonds[j].getOtherAtom(a).i);
+    }
+    int n = 4;
+    for (int i = bsConnected.nextSetBit(0); i >= 0; i = bsConnected
+        .nextSetBit(i + 1))
+      n += 5 + 3 * atoms[i].getBondCount();
+    int[] key = new int[n];
+    key[0] = atoms.length;
+    key[1] = rawBondCount;
+    key[2] = (doRound ? 1 : 0) | (allowUnknowns ? 2 : 0);
+    key[3] = bsAtoms.cardinality();
+    int pt = 4;
+    for (int i = bsConnected.nextSetBit(0); i >= 0; i = bsConnected
+        .nextSetBit(i + 1)) {
+      Atom a = atoms[i];
+      int nb = a.getBondCount();
+      key[pt++] = i;
+      key[pt++] = (bsAtoms.get(i) ? 1 : 0);
+      key[pt++] = a.getAtomicAndIsotopeNumber();
+      key[pt++] = a.getFormalCharge();
+      key[pt++] = nb;
+      for (int j = 0; j < nb; j++) {
+        Bond b = a.bonds[j];
+        key[pt++] = b.index;
+        key[pt++] = b.getOtherAtom(a).i;
+        key[pt++] = b.order;
+      }
+    }
+    return key;
+  }
+
+  /**
+   * @param connectivity
+   * @return {connectivity, atom types, bond types, charges, rings}, moved to
+   *         the front of the minimizer's cache, or null
+   */
+  private Object[] getCachedTypes(int[] connectivity) {
+    Lst<Object[]> cache = minimizer.mmffTypeCache;
+    if (cache != null)
+      for (int i = cache.size(); --i >= 0;) {
+        Object[] c = cache.get(i);
+        if (Arrays.equals((int[]) c[0], connectivity)) {
+          if (i > 0) {
+            cache.removeItemAt(i);
+            cache.add(0, c);
+          }
+          Logger.info("MMFF atom types from cache");
+          return c;
+        }
+      }
+    return null;
+  }
+
+  private void cacheTypes(Object[] c) {
+    Lst<Object[]> cache = minimizer.mmffTypeCache;
+    if (cache == null)
+      cache = minimizer.mmffTypeCache = new Lst<Object[]>();
+    else if (cache.size() == TYPE_CACHE_MAX)
+      cache.removeItemAt(TYPE_CACHE_MAX - 1);
+    cache.add(0, c);
   }
   private final static String names = "END.BCI.CHG.ANG.NDK.OND.OOP.TBN.FSB.TOR.VDW.";
   private final static int[] types = {0, TYPE_PBCI, TYPE_CHRG, TYPE_ANGLE, TYPE_BNDK, TYPE_BOND, TYPE_OOP, TYPE_SB, TYPE_SBDEF, TYPE_TORSION, TYPE_VDW };
@@ -10,7 +10,8 @@ class UFFVDWCalc extends Calculation {
   void setData(Lst<Object[]> calc, int ia, int ib, double dd) {
     a = calcs.minAtoms[ia];
     b = calcs.minAtoms[ib];
-    if (a.atom.distanceSquared(b.atom) > MAX_VDW_DIST2)
+    // with a nonbonded cutoff, the pair list is screened instead
+    if (calcs.cutoff == 0 && a.atom.distanceSquared(b.atom) > MAX_VDW_DIST2)
       return;
     FFParam parA = (FFParam) calcs.getParameter(a.sType);
     FFParam parB = (FFParam) calcs.getParameter(b.sType);
@@ -76,7 +76,6 @@ public class Atom extends Point3fi implements Node {
   public byte atomID;
   int atomSite;
   public Group group;
-  private double userDefinedVanDerWaalRadius;
   byte valence;
   /**
    * atomNumberFlags encodes atomic number (a), isotope number(i) as:
@@ -114,8 +113,8 @@ public class Atom extends Point3fi implements Node {
    */
   public Bond[] bonds;
   
-  private int nBondsDisplayed = 0;
-  public int nBackbonesDisplayed = 0;
+  private short nBondsDisplayed = 0;
+  public short nBackbonesDisplayed = 0;
   
   public int clickabilityFlags;
   public int shapeVisibilityFlags;
@@ -125,7 +124,6 @@ public class Atom extends Point3fi implements Node {
    * @param modelIndex
    * @param atomIndex
    * @param xyz
-   * @param radius
    * @param atomSymmetry
    * @param atomSite
    * @param atomicAndIsotopeNumber
@@ -136,7 +134,7 @@ public class Atom extends Point3fi implements Node {
    */
   
   public Atom setAtom(int modelIndex, int atomIndex,
-        P3d xyz, double radius,
+        P3d xyz,
         BS atomSymmetry, int atomSite,
         short atomicAndIsotopeNumber, int formalCharge, 
         boolean isHetero, boolean isNegDisorder) {
@@ -149,7 +147,6 @@ public class Atom extends Point3fi implements Node {
       formalChargeAndFlags = IS_HETERO_FLAG;
     if (formalCharge != 0 && formalCharge != Integer.MIN_VALUE)
       setFormalCharge(formalCharge);
-    userDefinedVanDerWaalRadius = radius;
     if (xyz != null)
       setT(xyz);
     return this;
@@ -248,6 +245,17 @@ public class Atom extends Point3fi implements Node {
   }
   
   public short calculateMad(Viewer vwr, RadiusData rd) {
+    return calculateMadMS(vwr, vwr.ms, rd);
+  }
+
+  /**
+   * @param vwr
+   * @param ms
+   *        the model set this atom belongs to; not yet vwr.ms during loading
+   * @param rd
+   * @return mad
+   */
+  short calculateMadMS(Viewer vwr, ModelSet ms, RadiusData rd) {
     if (rd == null)
       return 0;
     double f = rd.value;
@@ -261,7 +269,7 @@ public class Atom extends Point3fi implements Node {
       double r = 0;
       switch (rd.vdwType) {
       case TEMP:
-        double tmax = vwr.ms.getBfactor100Hi();
+        double tmax = ms.getBfactor100Hi();
         r = (tmax > 0 ? getBfactor100() / tmax : 0);
         break;
       case HYDRO:
@@ -275,7 +283,7 @@ public class Atom extends Point3fi implements Node {
         r = getADPMinMax(rd.vdwType == VDW.ADPMAX);
         break;
       default:
-        r = getVanderwaalsRadiusFloat(vwr, rd.vdwType);
+        r = getVdwRadius(vwr, ms, rd.vdwType);
       }
       if (rd.factorType == EnumType.FACTOR)
         f *= r;
@@ -416,8 +424,14 @@ public class Atom extends Point3fi implements Node {
     return (values == null ? Elements.getHydrophobicity(group.groupID) : values[i]);
   }
 
-  public boolean setRadius(double radius) {
-    return !Double.isNaN(userDefinedVanDerWaalRadius = (radius > 0 ? radius : Double.NaN));  
+  /**
+   * @param rr
+   *        the vdwRadii column of this atom's model set
+   * @return the user-defined or file-based van der Waals radius, or NaN
+   */
+  private double getUserVdwRadius(double[] rr) {
+    double r = (rr == null || i >= rr.length ? 0 : rr[i]);
+    return (r > 0 ? r : Double.NaN);
   }
   
   public void delete(BS bsBonds) {
@@ -573,29 +587,44 @@ public class Atom extends Point3fi implements Node {
 
   public double getVanderwaalsRadiusFloat(Viewer vwr, VDW type) {
     // called by atomPropertyFloat as VDW_AUTO,
-    // AtomCollection.fillAtomData with VDW_AUTO or VDW_NOJMOL
+    // StateCreator and Contact with VDW_AUTO
+    // Measurement and AtomIteratorWithinModel with passed on type
+    return getVdwRadius(vwr, vwr.ms, type);
+  }
+
+  /**
+   * AtomCollection and calculateMad pass this atom's own model set, since
+   * during loading vwr.ms is still the previous one.
+   * 
+   * @param vwr
+   * @param ms
+   * @param type
+   * @return radius
+   */
+  double getVdwRadius(Viewer vwr, ModelSet ms, VDW type) {
+    // called by AtomCollection.fillAtomData with VDW_AUTO or VDW_NOJMOL
     // AtomCollection.findMaxRadii with VDW_AUTO
-    // AtomCollection.getAtomPropertyState with VDW_AUTO
-    // AtomCollection.getVdwRadius with passed on type
-    return (Double.isNaN(userDefinedVanDerWaalRadius) 
-        ? vwr.getVanderwaalsMarType(atomNumberFlags, getVdwType(type)) / 1000d
-        : userDefinedVanDerWaalRadius);
+    double r = getUserVdwRadius(ms.vdwRadii);
+    return (Double.isNaN(r) 
+        ? vwr.getVanderwaalsMarType(atomNumberFlags, getVdwType(ms, type)) / 1000d
+        : r);
   }
 
   /**
    * 
+   * @param ms
    * @param type 
    * @return if VDW_AUTO, will return VDW_AUTO_JMOL, VDW_AUTO_RASMOL, or VDW_AUTO_BABEL
    *         based on the model type
    */
   @SuppressWarnings("incomplete-switch")
-  private VDW getVdwType(VDW type) {
+  private VDW getVdwType(ModelSet ms, VDW type) {
     switch (type) {
     case AUTO:
-      type = group.chain.model.ms.getDefaultVdwType(mi);
+      type = ms.getDefaultVdwType(mi);
       break;
     case NOJMOL:
-      type = group.chain.model.ms.getDefaultVdwType(mi);
+      type = ms.getDefaultVdwType(mi);
       if (type == VDW.AUTO_JMOL)
         type = VDW.AUTO_BABEL;
       break;
@@ -610,20 +639,20 @@ public class Atom extends Point3fi implements Node {
         getFormalCharge()) : r);
   }
 
-  double getVolume(Viewer vwr, VDW vType) {
-    double r1 = (vType == null ? userDefinedVanDerWaalRadius : Double.NaN);
+  double getVolume(Viewer vwr, ModelSet ms, VDW vType) {
+    double r1 = (vType == null ? getUserVdwRadius(ms.vdwRadii) : Double.NaN);
     if (Double.isNaN(r1))
-      r1 = vwr.getVanderwaalsMarType(getElementNumber(), getVdwType(vType)) / 1000d;
+      r1 = vwr.getVanderwaalsMarType(getElementNumber(), getVdwType(ms, vType)) / 1000d;
     double volume = 0;
     if (bonds != null)
       for (int j = 0; j < bonds.length; j++) {
         if (!bonds[j].isCovalent())
           continue;
         Atom atom2 = bonds[j].getOtherAtom(this);
-        double r2 = (vType == null ? atom2.userDefinedVanDerWaalRadius : Double.NaN);
+        double r2 = (vType == null ? atom2.getUserVdwRadius(ms.vdwRadii) : Double.NaN);
         if (Double.isNaN(r2))
           r2 = vwr.getVanderwaalsMarType(atom2.getElementNumber(), atom2
-              .getVdwType(vType)) / 1000d;
+              .getVdwType(ms, vType)) / 1000d;
         double d = distance(atom2);
         if (d > r1 + r2)
           continue;
@@ -1362,7 +1391,7 @@ public class Atom extends Point3fi implements Node {
     case T.translucent:
       return C.getColixTranslucencyFractional(colixAtom);
     case T.volume:
-      return getVolume(vwr, VDW.AUTO);
+      return getVolume(vwr, vwr.ms, VDW.AUTO);
     case T.unitx:
       return getFractionalUnitCoord(!vwr.g.legacyJavaFloat, 'X', ptTemp);
     case T.unity:
@@ -208,6 +208,7 @@ abstract public class AtomCollection {
   double[] partialCharges;
   double[] bondingRadii;
   double[] hydrophobicities;
+  double[] vdwRadii; // user-defined or from the file; 0 if not set
   public BS bsPartialCharges;
   
   
@@ -232,6 +233,7 @@ abstract public class AtomCollection {
     bfactor100s = null;
     resetPartialCharges();
     bondingRadii = null;
+    vdwRadii = null;
     atomTensors = null;
   }
 
@@ -248,6 +250,7 @@ abstract public class AtomCollection {
  //   precisionCoords = mergeModelSet.precisionCoords;
     bfactor100s = mergeModelSet.bfactor100s;
     bondingRadii = mergeModelSet.bondingRadii;
+    vdwRadii = mergeModelSet.vdwRadii;
     partialCharges = mergeModelSet.partialCharges;
     bsPartialCharges = mergeModelSet.bsPartialCharges;
     atomTensors = mergeModelSet.atomTensors;
@@ -370,7 +373,7 @@ abstract public class AtomCollection {
         continue;
       if ((r = atom.getBondingRadius()) > maxBondingRadius)
         maxBondingRadius = r;
-      if ((r = atom.getVanderwaalsRadiusFloat(vwr, VDW.AUTO)) > maxVanderwaalsRadius)
+      if ((r = atom.getVdwRadius(vwr, (ModelSet) this, VDW.AUTO)) > maxVanderwaalsRadius)
         maxVanderwaalsRadius = r;
     }
   }
@@ -434,7 +437,7 @@ abstract public class AtomCollection {
     double volume = 0;
     if (bs != null)
       for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1))
-        volume += at[i].getVolume(vwr, vType);
+        volume += at[i].getVolume(vwr, (ModelSet) this, vType);
     return volume;
   }
   
@@ -702,7 +705,7 @@ abstract public class AtomCollection {
         taintAtom(i, TAINT_VALENCE);
         break;
       case T.vanderwaals:
-        if (atom.setRadius(fValue))
+        if (setVdwRadius(i, fValue))
           taintAtom(i, TAINT_VANDERWAALS);
         else
           untaint(i, TAINT_VANDERWAALS);
@@ -986,6 +989,30 @@ abstract public class AtomCollection {
     taintAtom(atomIndex, TAINT_BONDINGRADIUS);
   }
 
+  /**
+   * Van der Waals radii set by the user or read from the file are kept here
+   * rather than in each Atom, since most models have none.
+   * 
+   * @param atomIndex
+   * @param radius
+   *        a value that is not positive clears the radius
+   * @return true if a radius has been set
+   */
+  protected boolean setVdwRadius(int atomIndex, double radius) {
+    if (!(radius > 0)) {
+      if (vdwRadii != null && atomIndex < vdwRadii.length)
+        vdwRadii[atomIndex] = 0;
+      return false;
+    }
+    if (vdwRadii == null) {
+      vdwRadii = new double[at.length];
+    } else if (vdwRadii.length < at.length) {
+      vdwRadii = AU.ensureLengthD(vdwRadii, at.length);
+    }
+    vdwRadii[atomIndex] = radius;
+    return true;
+  }
+
   protected void setBFactor(int atomIndex, double bfactor, boolean doTaint) {
     if (Double.isNaN(bfactor) || doTaint && bfactor == at[atomIndex].getBfactor100())
       return;
@@ -1094,7 +1121,7 @@ abstract public class AtomCollection {
           atom.setValence((int)x);     
           break;
         case TAINT_VANDERWAALS:
-          atom.setRadius(x);          
+          setVdwRadius(atomIndex, x);
           break;
         }
         taintAtom(atomIndex, type);
@@ -1156,6 +1183,16 @@ abstract public class AtomCollection {
       bspf.validateModel(modelIndex, isValid);
   }
 
+  /**
+   * Atoms of this model have moved, but none has been added or deleted.
+   * 
+   * @param modelIndex
+   */
+  void moveBspfForModel(int modelIndex) {
+    if (bspf != null)
+      bspf.moveModel(modelIndex);
+  }
+
   // state tainting
   
   public void setPreserveState(boolean TF) {
@@ -1198,7 +1235,7 @@ abstract public class AtomCollection {
 
   private void taintModelCoord(int atomIndex) {
     Model m = ((ModelSet) this).am[at[atomIndex].mi];
-    validateBspfForModel(m.trajectoryBaseIndex, false);
+    moveBspfForModel(m.trajectoryBaseIndex);
     if (m.isBioModel)
       m.resetDSSR(true);
     pointGroup = null;
@@ -1335,8 +1372,7 @@ abstract public class AtomCollection {
         r = atom.getADPMinMax(false);
         break;
       default:
-        r = atom.getVanderwaalsRadiusFloat(vwr,
-            atomData.radiusData.vdwType);
+        r = atom.getVdwRadius(vwr, (ModelSet) this, atomData.radiusData.vdwType);
       }
       if (rd.factorType == EnumType.FACTOR)
         r *= rd.value;
@@ -2791,6 +2827,7 @@ abstract public class AtomCollection {
     hasBfactorRange = false;
     occupancies = (double[]) AU.deleteElements(occupancies, firstAtomIndex,
         nAtoms);
+    vdwRadii = (double[]) AU.deleteElements(vdwRadii, firstAtomIndex, nAtoms);
 //    precisionCoords = (P3d[]) AU.deleteElements(precisionCoords, firstAtomIndex,
 //        nAtoms);
     resetPartialCharges();
@@ -44,6 +44,7 @@ public class AtomIteratorWithinModel implements AtomIndexIterator {
   protected CubeIterator cubeIterator;
   protected Bspf bspf;
   private boolean threadSafe;
+  private boolean inBsptOrder;
   private boolean hemisphereOnly;
   private boolean isZeroBased;
 
@@ -85,6 +86,15 @@ public class AtomIteratorWithinModel implements AtomIndexIterator {
     cubeIterator = null;
   }
 
+  /**
+   * Return atoms in Bspt order even when the model is indexed by a cell list,
+   * as autobonding requires.
+   */
+  void setBsptOrder() {
+    inBsptOrder = true;
+    cubeIterator = null;
+  }
+
   private RadiusData radiusData;
   private double vdw1;
   private boolean isVdw;
@@ -98,7 +108,8 @@ public class AtomIteratorWithinModel implements AtomIndexIterator {
     if (threadSafe)
       modelIndex = -1 - modelIndex; // no caching
     if (modelIndex != this.modelIndex || cubeIterator == null) {
-      cubeIterator = bspf.getCubeIterator(modelIndex);
+      cubeIterator = (inBsptOrder ? bspf.getNewBsptCubeIterator(modelIndex)
+          : bspf.getCubeIterator(modelIndex));
       this.modelIndex = modelIndex;
       //bspf.dump();
     }
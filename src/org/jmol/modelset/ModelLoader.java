@@ -378,7 +378,7 @@ public final class ModelLoader {
     int ac = ms.ac;
     Atom[] atoms = ms.at;
     for (int i = baseAtomIndex; i < ac; i++)
-      atoms[i].setMadAtom(vwr, rd);
+      atoms[i].madAtom = atoms[i].calculateMadMS(vwr, ms, rd);
     Model[] models = ms.am;
     for (int i = models[baseModelIndex].firstAtomIndex; i < ac; i++)
       if (atoms[i] != null)
@@ -48,6 +48,7 @@ import org.jmol.modelsetbio.BioModel;
 import org.jmol.script.ScriptCompiler;
 import org.jmol.script.T;
 import org.jmol.shape.Shape;
+import org.jmol.thread.ParallelTasks;
 import org.jmol.util.BSUtil;
 import org.jmol.util.BoxInfo;
 import org.jmol.util.Edge;
@@ -1037,7 +1038,7 @@ public class ModelSet extends BondCollection {
           atom1.getSeqID(), n, pts[i], Double.NaN, null, 0, 0, 100, Double.NaN,
           null, false, false, (byte) 0, null, Double.NaN);
 
-      atom2.setMadAtom(vwr, rd);
+      atom2.madAtom = atom2.calculateMadMS(vwr, this, rd);
       bs.set(atom2.i);
       bondAtoms(atom1, atom2, Edge.BOND_COVALENT_SINGLE, mad, null, 0, false,
           false);
@@ -2178,7 +2179,8 @@ public class ModelSet extends BondCollection {
 
   protected void initializeBspt(int modelIndex) {
     initializeBspf();
-    if (bspf.isInitializedIndex(modelIndex))
+    // atoms that have only moved can be relocated in place
+    if (bspf.isInitializedIndex(modelIndex) || bspf.updateIndex(modelIndex))
       return;
     bspf.initialize(modelIndex, at,
         vwr.getModelUndeletedAtomsBitSet(modelIndex));
@@ -2816,8 +2818,9 @@ public class ModelSet extends BondCollection {
     return new int[] { nNew, nModified };
   }
 
-  public int autoBondBs4(BS bsA, BS bsB, BS bsExclude, BS bsBonds, short mad,
-                         boolean preJmol11_9_24, SB state) {
+  public int autoBondBs4(final BS bsA, final BS bsB, final BS bsExclude,
+                         BS bsBonds, short mad, boolean preJmol11_9_24,
+                         SB state) {
     // unfortunately, 11.9.24 changed the order with which atoms were processed
     // for autobonding. This means that state script prior to that that use
     // select BOND will be misread by later version.
@@ -2835,13 +2838,12 @@ public class ModelSet extends BondCollection {
       findMaxRadii();
     double bondTolerance = vwr.getDouble(T.bondtolerance);
     double minBondDistance = vwr.getDouble(T.minbonddistance);
-    double minBondDistance2 = minBondDistance * minBondDistance;
+    final double minBondDistance2 = minBondDistance * minBondDistance;
     int nNew = 0;
     if (showRebondTimes)// && Logger.debugging)
       Logger.startTimer("autobond");
-    int lastModelIndex = -1;
-    boolean isAll = (bsA == null);
-    BS bsCheck;
+    final boolean isAll = (bsA == null);
+    final BS bsCheck;
     int i0;
     if (isAll) {
       i0 = 0;
@@ -2855,11 +2857,115 @@ public class ModelSet extends BondCollection {
       }
       i0 = bsCheck.nextSetBit(0);
     }
-    AtomIndexIterator iter = getSelectedAtomIterator(null, false, false, true,
-        false);
+    if (i0 < 0)
+      i0 = ac;
+    
+    // Candidate bonds are found in blocks of atoms, possibly in parallel,
+    // and then made here in atom order, exactly as if found serially. 
+    
+    int nTasks = ParallelTasks.getTaskCount(vwr.getBoolean(T.multiprocessor), ac - i0, MIN_AUTOBOND_ATOMS);
+    final int[][] pairs = new int[nTasks][];
+    final int[] nPairs = new int[nTasks];
+    final AtomIteratorWithinModel[] iters = new AtomIteratorWithinModel[nTasks];
+    if (nTasks > 1) {
+      // the bspts must all be in place before the tasks share them
+      BS bsModels = (isAll ? null : getModelBS(bsCheck, false));
+      for (int m = 0; m < mc; m++)
+        if ((bsModels == null || bsModels.get(m)) && !isJmolDataFrame(m))
+          initializeBspt(am[m].trajectoryBaseIndex);
+      for (int t = 0; t < nTasks; t++) {
+        AtomIteratorWithinModel iter = new AtomIteratorWithinModel();
+        iter.initialize(bspf, null, false, false, true, true);
+        iters[t] = iter;
+      }
+    } else {
+      iters[0] = (AtomIteratorWithinModel) getSelectedAtomIterator(null,
+          false, false, true, false);
+    }
+    // bonds are numbered in the order found, so a cell-list index must not
+    // change the order in which neighbors are returned
+    for (int t = 0; t < nTasks; t++)
+      iters[t].setBsptOrder();
+    if (nTasks == 1) {
+      nNew = findAutoBonds(i0, ac, bsA, bsB, bsCheck, bsExclude,
+          minBondDistance2, bondTolerance, iters[0], null, 0, mad, bsBonds,
+          state);
+      if (showRebondTimes)
+        Logger.checkTimer("autoBond", false);
+      return nNew;
+    }
+    final int iFirst = i0;
+    final double tolerance = bondTolerance;
+    ParallelTasks.runTasks(ac - i0, nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        nPairs[task] = findAutoBonds(iFirst + i0, iFirst + i1, bsA, bsB,
+            bsCheck, bsExclude, minBondDistance2, tolerance, iters[task],
+            pairs, task, (short) 0, null, null);
+      }
+    });
+    for (int t = 0; t < nTasks; t++) {
+      int[] p = pairs[t];
+      for (int k = 0, n = nPairs[t]; k < n; k += 2) {
+        int i = p[k];
+        int j = p[k + 1];
+        if (autoBondCheck(at[i], at[j], 1, mad, bsBonds)) {
+          nNew++;
+          if (state != null)
+            state.append("connect ({" + i + "}) ({" + j + "});");
+        }
+      }
+    }
+    if (showRebondTimes)
+      Logger.checkTimer("autoBond", false);
+    return nNew;
+  }
+
+  private final static int MIN_AUTOBOND_ATOMS = 5000;
+
+  /**
+   * Find the bondable pairs for atoms iFirst through iLast - 1, in the order
+   * that autoBondBs4 will attempt to bond them. With pairs null, each pair
+   * is bonded as soon as it is found; otherwise the pairs are only buffered
+   * and the model set is only read.
+   * 
+   * @param iFirst
+   * @param iLast
+   * @param bsA
+   * @param bsB
+   * @param bsCheck
+   *        atoms in A or B, or null for all atoms
+   * @param bsExclude
+   * @param minBondDistance2
+   * @param bondTolerance
+   * @param iter
+   *        this task's own iterator
+   * @param pairs
+   *        buffer for atom index pairs, set to pairs[task], or null to bond
+   *        directly
+   * @param task
+   * @param mad
+   *        for bonding directly
+   * @param bsBonds
+   *        for bonding directly
+   * @param state
+   *        for bonding directly
+   * @return number of entries in pairs[task], two per pair, or, with pairs
+   *         null, the number of new bonds
+   */
+  int findAutoBonds(int iFirst, int iLast, BS bsA, BS bsB, BS bsCheck,
+                    BS bsExclude, double minBondDistance2,
+                    double bondTolerance, AtomIndexIterator iter,
+                    int[][] pairs, int task, short mad, BS bsBonds,
+                    SB state) {
+    boolean isAll = (bsCheck == null);
+    int[] p = (pairs == null ? null
+        : new int[Math.max(16, (iLast - iFirst) * 2)]);
+    int n = 0;
+    int lastModelIndex = -1;
     boolean useOccupation = false;
-    for (int i = i0; i >= 0
-        && i < ac; i = (isAll ? i + 1 : bsCheck.nextSetBit(i + 1))) {
+    for (int i = (isAll ? iFirst : bsCheck.nextSetBit(iFirst)); i >= 0
+        && i < iLast; i = (isAll ? i + 1 : bsCheck.nextSetBit(i + 1))) {
       boolean isAtomInSetA = (isAll || bsA.get(i));
       boolean isAtomInSetB = (isAll || bsB.get(i));
       Atom atom = at[i];
@@ -2903,19 +3009,27 @@ public class ModelSet extends BondCollection {
             || useCharge
                 && (Math.signum(atomNear.getFormalCharge()) == myFormalCharge))
           continue;
-        int order = (isBondable(myBondingRadius, atomNear.getBondingRadius(),
-            iter.foundDistance2(), minBondDistance2, bondTolerance) ? 1 : 0);
-        if (order > 0 && autoBondCheck(atom, atomNear, order, mad, bsBonds)) {
-          nNew++;
-          if (state != null)
-            state.append("connect ({" + i + "}) ({" + j + "});");
+        if (!isBondable(myBondingRadius, atomNear.getBondingRadius(),
+            iter.foundDistance2(), minBondDistance2, bondTolerance))
+          continue;
+        if (p == null) {
+          if (autoBondCheck(atom, atomNear, 1, mad, bsBonds)) {
+            n++;
+            if (state != null)
+              state.append("connect ({" + i + "}) ({" + j + "});");
+          }
+          continue;
         }
+        if (n + 2 > p.length)
+          p = AU.doubleLengthI(p);
+        p[n++] = i;
+        p[n++] = j;
       }
       iter.release();
     }
-    if (showRebondTimes)
-      Logger.checkTimer("autoBond", false);
-    return nNew;
+    if (p != null)
+      pairs[task] = p;
+    return n;
   }
 
   public boolean isBondable(double bondingRadiusA, double bondingRadiusB,
@@ -3424,6 +3538,8 @@ public class ModelSet extends BondCollection {
       bfactor100s = AU.arrayCopyShort(bfactor100s, newLength);
     if (partialCharges != null)
       partialCharges = AU.arrayCopyD(partialCharges, newLength);
+    if (vdwRadii != null)
+      vdwRadii = AU.arrayCopyD(vdwRadii, newLength);
     if (atomTensorList != null)
       atomTensorList = (Object[][]) AU.arrayCopyObject(atomTensorList,
           newLength);
@@ -3446,7 +3562,7 @@ public class ModelSet extends BondCollection {
                       double occupancy, double bfactor, Lst<Object> tensors,
                       boolean isHetero, boolean isNegDisorder,
                       byte specialAtomID, BS atomSymmetry, double bondRadius) {
-    Atom atom = new Atom().setAtom(modelIndex, ac, xyz, radius, atomSymmetry,
+    Atom atom = new Atom().setAtom(modelIndex, ac, xyz, atomSymmetry,
         atomSite, (short) atomicAndIsotopeNumber, formalCharge, isHetero,
         isNegDisorder);
     am[modelIndex].act++;
@@ -3460,6 +3576,7 @@ public class ModelSet extends BondCollection {
     setBFactor(ac, bfactor, false);
     setOccupancy(ac, occupancy, false);
     setPartialCharge(ac, partialCharge, false);
+    setVdwRadius(ac, radius);
     if (tensors != null)
       setAtomTensors(ac, tensors);
     atom.group = group;
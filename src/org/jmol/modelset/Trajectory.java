@@ -146,10 +146,10 @@ public class Trajectory {
         bs.set(i);
       } 
     }
-    // Clear the Binary Search so that select within(),
+    // Flag the Binary Search as moved so that select within(),
     // isosurface, and dots will work properly
     ms.initializeBspf();
-    ms.validateBspfForModel(baseModelIndex, false);
+    ms.moveBspfForModel(baseModelIndex);
     // Recalculate critical points for cartoons and such
     // note that models[baseModel] and models[modelIndex]
     // point to the same model. So there is only one copy of 
@@ -23,12 +23,15 @@
  */
 package org.jmol.modelsetbio;
 
+import org.jmol.bspt.Bspt;
+import org.jmol.bspt.CubeIterator;
 import org.jmol.c.STR;
 import javajs.util.BS;
 import org.jmol.modelset.Atom;
 import org.jmol.modelset.Bond;
 import org.jmol.modelset.HBond;
 import org.jmol.script.T;
+import org.jmol.thread.ParallelTasks;
 import org.jmol.util.C;
 import org.jmol.util.Edge;
 import org.jmol.util.Logger;
@@ -39,6 +42,7 @@ import javajs.util.V3d;
 
 import javajs.util.Lst;
 
+import java.util.Arrays;
 import java.util.Map;
 
 
@@ -185,20 +189,80 @@ public class AminoPolymer extends AlphaPolymer {
   // 
   //////////////////////////////////////////////////
   
+  /**
+   * smallest block of donors worth handing to another thread
+   */
+  private final static int MIN_DONORS_PER_TASK = 100;
+
+  /**
+   * acceptor polymers at least this long get a Bspt of their alpha carbons,
+   * so that each donor checks only the nearby residues
+   */
+  private final static int MIN_ACCEPTORS_FOR_BSPT = 32;
+
   @Override
-  public void calcRasmolHydrogenBonds(BioPolymer polymer, BS bsA, BS bsB,
-                                      Lst<Bond> vHBonds, int nMaxPerResidue,
-                                      int[][][] min, boolean checkDistances, 
-                                      boolean dsspIgnoreHydrogens) {
+  public void calcRasmolHydrogenBonds(BioPolymer polymer, final BS bsA,
+                                      final BS bsB, final Lst<Bond> vHBonds,
+                                      int nMaxPerResidue, final int[][][] min,
+                                      final boolean checkDistances,
+                                      final boolean dsspIgnoreHydrogens) {
     if (polymer == null)
       polymer = this;
     if (!(polymer instanceof AminoPolymer))
       return;
+    final AminoPolymer acceptors = (AminoPolymer) polymer;
+    final Bspt bspt = (polymer.monomerCount < MIN_ACCEPTORS_FOR_BSPT ? null
+        : acceptors.getAlphaBspt());
+    // donors are independent; each task fills only its own min[i]
+    // and its own list of bonds, which are added in block order
+    int n = monomerCount - 1; //not first N
+    int nTasks = ParallelTasks.getTaskCount(
+        model.ms.vwr.getBoolean(T.multiprocessor), n, MIN_DONORS_PER_TASK);
+    final Object[] taskBonds = (vHBonds == null || nTasks == 1 ? null
+        : new Object[nTasks]);
+    nTasks = ParallelTasks.runTasks(n, nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        Lst<Bond> v = vHBonds;
+        if (taskBonds != null)
+          taskBonds[task] = v = new Lst<Bond>();
+        calcDonorHydrogenBonds(acceptors, i0 + 1, i1 + 1, bsA, bsB, v, min,
+            checkDistances, dsspIgnoreHydrogens,
+            (bspt == null ? null : bspt.allocateCubeIterator()));
+      }
+    });
+    if (taskBonds != null)
+      for (int t = 0; t < nTasks; t++)
+        vHBonds.addAll(getTaskBonds(taskBonds[t]));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Lst<Bond> getTaskBonds(Object bonds) {
+    return (Lst<Bond>) bonds;
+  }
+
+  /**
+   * @return a Bspt of this polymer's alpha carbons
+   */
+  private Bspt getAlphaBspt() {
+    Bspt bspt = new Bspt(3, 0);
+    for (int i = 0; i < monomerCount; i++)
+      bspt.addTuple(monomers[i].getLeadAtom());
+    return bspt;
+  }
+
+  private void calcDonorHydrogenBonds(AminoPolymer polymer, int iFirst,
+                                      int iLast, BS bsA, BS bsB,
+                                      Lst<Bond> vHBonds, int[][][] min,
+                                      boolean checkDistances,
+                                      boolean dsspIgnoreHydrogens,
+                                      CubeIterator iter) {
     P3d pt = new P3d();
     V3d vNH = new V3d();
     AminoMonomer source;
     int[][] min1 = (min == null ? new int[2][3] : null);
-    for (int i = 1; i < monomerCount; ++i) { //not first N
+    int[] acceptors = (iter == null ? null : new int[polymer.monomerCount]);
+    for (int i = iFirst; i < iLast; ++i) {
       if (min == null) {
         min1[0][0] = min1[1][0] = bioPolymerIndexInModel;
         min1[0][1] = min1[1][1] = Integer.MIN_VALUE;
@@ -215,7 +279,8 @@ public class AminoPolymer extends AlphaPolymer {
         if (!checkDistances && source.getCarbonylOxygenAtom() == null)
           continue;
         checkRasmolHydrogenBond(source, polymer, i, pt,
-            (isInA ? bsB : bsA), vHBonds, min1, checkDistances);
+            (isInA ? bsB : bsA), vHBonds, min1, checkDistances, iter,
+            acceptors);
       }
     }
   }
@@ -230,12 +295,24 @@ public class AminoPolymer extends AlphaPolymer {
   private void checkRasmolHydrogenBond(AminoMonomer source, BioPolymer polymer,
                                        int indexDonor, P3d hydrogenPoint,
                                        BS bsB, Lst<Bond> vHBonds,
-                                       int[][] min, boolean checkDistances) {
+                                       int[][] min, boolean checkDistances,
+                                       CubeIterator iter, int[] acceptors) {
     P3d sourceAlphaPoint = source.getLeadAtom();
     P3d sourceNitrogenPoint = source.getNitrogenAtom();
     Atom nitrogen = source.getNitrogenAtom();
     int[] m;
-    for (int i = polymer.monomerCount; --i >= 0;) {
+    int n = polymer.monomerCount;
+    if (iter != null) {
+      // just the nearby acceptors, but in the same descending order
+      // as the full loop, so that equal energies resolve the same way
+      iter.initialize(sourceAlphaPoint, maxHbondAlphaDistance, false);
+      n = 0;
+      while (iter.hasMoreElements())
+        acceptors[n++] = ((Monomer) ((Atom) iter.nextElement()).group).monomerIndex;
+      Arrays.sort(acceptors, 0, n);
+    }
+    for (int j = n; --j >= 0;) {
+      int i = (iter == null ? j : acceptors[j]);
       if (polymer == this && (i == indexDonor || i + 1 == indexDonor 
           /* || i - 1 == indexDonor*/ ))
         continue; 
@@ -23,6 +23,7 @@
  */
 package org.jmol.modelsetbio;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Properties;
@@ -79,6 +80,11 @@ public final class BioModel extends Model {
   String defaultStructure;
 
   public boolean haveDSSR;
+
+  /**
+   * DSSP's dual-minimum N-H-->O=C array and the backbone it was calculated from
+   */
+  private Object[] dsspHBondCache;
   
   BioModel(ModelSet modelSet, int modelIndex, int trajectoryBaseIndex, 
       Map<String, Object> jmolData, Properties properties, Map<String, Object> auxiliaryInfo) {
@@ -103,6 +109,17 @@ public final class BioModel extends Model {
   }
 
 
+  public int[][][][] getCachedDsspHBonds(double[] check) {
+    return (dsspHBondCache != null
+        && Arrays.equals((double[]) dsspHBondCache[0], check)
+            ? (int[][][][]) dsspHBondCache[1]
+            : null);
+  }
+
+  public void setCachedDsspHBonds(double[] check, int[][][][] min) {
+    dsspHBondCache = new Object[] { check, min };
+  }
+
   void addSecondaryStructure(STR type, String structureID,
                                     String serialID, int strandCount,
                                     int startChainID, int startSeqcode,
@@ -123,8 +140,20 @@ public final class BioModel extends Model {
     }
   }
 
+  /**
+   * 
+   * @param vHBonds
+   * @param doReport
+   * @param dsspIgnoreHydrogen
+   * @param setStructure
+   * @param version
+   * @param deferred
+   *        if not null, the protein structures are not set; the DSSP holding
+   *        them is returned in deferred[0] instead
+   * @return report
+   */
   private String calculateDssx(Lst<Bond> vHBonds, boolean doReport,
-                               boolean dsspIgnoreHydrogen, boolean setStructure, int version) {
+                               boolean dsspIgnoreHydrogen, boolean setStructure, int version, DSSP[] deferred) {
     boolean haveProt = false;
     boolean haveNucl = false;
     for (int i = 0; i < bioPolymerCount && !(haveProt && haveNucl); i++) {
@@ -134,10 +163,15 @@ public final class BioModel extends Model {
         haveProt = true;
     }
     String s = "";
-    if (haveProt)
-      s += ((DSSP) Interface.getOption("dssx.DSSP", vwr, "ms"))
-        .calculateDssp(bioPolymers, bioPolymerCount, vHBonds, doReport,
+    if (haveProt) {
+      DSSP dssp = (DSSP) Interface.getOption("dssx.DSSP", vwr, "ms");
+      if (deferred != null) {
+        dssp.deferStructures();
+        deferred[0] = dssp;
+      }
+      s += dssp.calculateDssp(bioPolymers, bioPolymerCount, vHBonds, doReport,
             dsspIgnoreHydrogen, setStructure, version);
+    }
     if (haveNucl && haveDSSR && vHBonds != null)
       s += vwr.getAnnotationParser(T.dssr).getHBonds(ms, modelIndex, vHBonds, doReport);
     return s;
@@ -146,18 +180,62 @@ public final class BioModel extends Model {
   String calculateStructures(boolean asDSSP, boolean doReport,
                                     boolean dsspIgnoreHydrogen,
                                     boolean setStructure, boolean includeAlpha, int version) {
+    return (prepareStructures(asDSSP, setStructure, includeAlpha) && asDSSP
+        ? calculateDssx(null, doReport, dsspIgnoreHydrogen, setStructure, version, null)
+        : "");
+  }
+
+  /**
+   * The part of calculateStructures that comes before DSSP: clearing the old
+   * structures and assigning any alpha-carbon-only ones.
+   * 
+   * @param asDSSP
+   * @param setStructure
+   * @param includeAlpha
+   * @return false if there is nothing to calculate
+   */
+  boolean prepareStructures(boolean asDSSP, boolean setStructure,
+                            boolean includeAlpha) {
     if (bioPolymerCount == 0 || !setStructure && !asDSSP)
-      return "";
+      return false;
     ms.proteinStructureTainted = structureTainted = true;
     if (setStructure)
       for (int i = bioPolymerCount; --i >= 0;)
         if (!asDSSP || bioPolymers[i].monomers[0].getNitrogenAtom() != null)
           bioPolymers[i].clearStructures();
     if (!asDSSP || includeAlpha)
-      for (int i = bioPolymerCount; --i >= 0;)
-        if (bioPolymers[i] instanceof AlphaPolymer)
-          ((AlphaPolymer) bioPolymers[i]).calculateStructures(includeAlpha);
-    return (asDSSP ? calculateDssx(null, doReport, dsspIgnoreHydrogen, setStructure, version) : "");
+      calculateAlphaStructures(includeAlpha);
+    return true;
+  }
+
+  /**
+   * Assign structures to polymers that are not handled by DSSP; with
+   * alphaOnly, that is just those having only alpha carbons.
+   * 
+   * @param alphaOnly
+   */
+  void calculateAlphaStructures(boolean alphaOnly) {
+    for (int i = bioPolymerCount; --i >= 0;)
+      if (bioPolymers[i] instanceof AlphaPolymer)
+        ((AlphaPolymer) bioPolymers[i]).calculateStructures(alphaOnly);
+  }
+
+  /**
+   * The DSSP part of calculateStructures, which may be run for several models
+   * at once. The protein structures found are held in the DSSP returned in
+   * dssp[0] (if any) until its setStructures() method is called.
+   * 
+   * @param doReport
+   * @param dsspIgnoreHydrogen
+   * @param setStructure
+   * @param version
+   * @param dssp
+   * @return report
+   */
+  String calculateDsspDeferred(boolean doReport, boolean dsspIgnoreHydrogen,
+                               boolean setStructure, int version, DSSP[] dssp) {
+    return calculateDssx(null, doReport, dsspIgnoreHydrogen, setStructure,
+        version, dssp);
   }
 
   
@@ -389,7 +467,7 @@ public final class BioModel extends Model {
     boolean asDSSX = (bsB == null);
     BioPolymer bp, bp1;
     if (asDSSX && bioPolymerCount > 0) {
-      calculateDssx(vHBonds, false, dsspIgnoreHydrogens, false, version);
+      calculateDssx(vHBonds, false, dsspIgnoreHydrogens, false, version, null);
     } else {
       for (int i = bioPolymerCount; --i >= 0;) {
         bp = bioPolymers[i];
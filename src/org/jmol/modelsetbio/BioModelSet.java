@@ -7,6 +7,7 @@ import java.util.Map;
 import org.jmol.api.Interface;
 import org.jmol.api.JmolAnnotationParser;
 import org.jmol.c.STR;
+import org.jmol.dssx.DSSP;
 import org.jmol.modelset.Atom;
 import org.jmol.modelset.Bond;
 import org.jmol.modelset.Group;
@@ -14,6 +15,7 @@ import org.jmol.modelset.Model;
 import org.jmol.modelset.ModelSet;
 import org.jmol.modelset.Structure;
 import org.jmol.script.T;
+import org.jmol.thread.ParallelTasks;
 import org.jmol.util.BSUtil;
 import org.jmol.util.Edge;
 import org.jmol.util.Escape;
@@ -173,15 +175,70 @@ public class BioModelSet {
     //TODO bsModels first for not setStructure, after that for setstructure....
     if (setStructure)
       setAllDefaultStructure(bsModels);
-    for (int i = bsModels.nextSetBit(0); i >= 0; i = bsModels.nextSetBit(i + 1))
-      if (ms.am[i].isBioModel)
-        ret += ((BioModel) ms.am[i]).calculateStructures(asDSSP, doReport,
-            dsspIgnoreHydrogen, setStructure, includeAlpha, version);
+    if (asDSSP && ms.trajectory == null
+        && ParallelTasks.getTaskCount(vwr.getBoolean(T.multiprocessor),
+            bsModels.cardinality(), 1) > 1)
+      ret = calculateAllDssp(bsModels, doReport, dsspIgnoreHydrogen,
+          setStructure, includeAlpha, version);
+    else
+      for (int i = bsModels.nextSetBit(0); i >= 0; i = bsModels.nextSetBit(i + 1))
+        if (ms.am[i].isBioModel)
+          ret += ((BioModel) ms.am[i]).calculateStructures(asDSSP, doReport,
+              dsspIgnoreHydrogen, setStructure, includeAlpha, version);
     if (setStructure)
       ms.setStructureIndexes();
     return ret;
   }
 
+  /**
+   * Run DSSP for several models at once. Old structures are cleared for all
+   * models first, and the analysis, which reads only each model's backbone,
+   * is done in parallel. Then, model by model, the alpha-carbon-only
+   * structures and the DSSP structures are created, in the same order as
+   * with calculateStructures, since ProteinStructure numbering is global.
+   * 
+   * @param bsModels
+   * @param doReport
+   * @param dsspIgnoreHydrogen
+   * @param setStructure
+   * @param includeAlpha
+   * @param version
+   * @return the reports for all models, in order
+   */
+  private String calculateAllDssp(BS bsModels, final boolean doReport,
+                                  final boolean dsspIgnoreHydrogen,
+                                  final boolean setStructure,
+                                  boolean includeAlpha, final int version) {
+    final BioModel[] models = new BioModel[bsModels.cardinality()];
+    int n = 0;
+    for (int i = bsModels.nextSetBit(0); i >= 0; i = bsModels.nextSetBit(i + 1))
+      if (ms.am[i].isBioModel
+          && ((BioModel) ms.am[i]).prepareStructures(true, setStructure,
+              false))
+        models[n++] = (BioModel) ms.am[i];
+    final String[] reports = new String[n];
+    final DSSP[][] dssps = new DSSP[n][1];
+    ParallelTasks.runTasks(n,
+        ParallelTasks.getTaskCount(vwr.getBoolean(T.multiprocessor), n, 1),
+        new ParallelTasks.Block() {
+          @Override
+          public void run(int task, int i0, int i1) {
+            for (int i = i0; i < i1; i++)
+              reports[i] = models[i].calculateDsspDeferred(doReport,
+                  dsspIgnoreHydrogen, setStructure, version, dssps[i]);
+          }
+        });
+    String ret = "";
+    for (int i = 0; i < n; i++) {
+      if (includeAlpha)
+        models[i].calculateAlphaStructures(true);
+      if (dssps[i][0] != null)
+        dssps[i][0].setStructures();
+      ret += reports[i];
+    }
+    return ret;
+  }
+
   public String calculateAllStuctures(BS bsAtoms, boolean asDSSP,
                                       boolean doReport,
                                       boolean dsspIgnoreHydrogen,
@@ -33,6 +33,7 @@ import javajs.util.BS;
 import org.jmol.jvxl.data.VolumeData;
 import org.jmol.modelset.Atom;
 import org.jmol.quantum.mo.DataAdder;
+import org.jmol.thread.ParallelTasks;
 import org.jmol.util.Logger;
 
 
@@ -97,6 +98,16 @@ public class MOCalculation extends QuantumCalculation {
   public final static double ROOT3 = 1.73205080756887729d;
 
   private final static double CUT = -50;
+
+  /**
+   * Gaussian shell contributions smaller than this are not calculated
+   */
+  private final static double SHELL_CUTOFF = 1e-8;
+
+  /**
+   * default range in Bohr around an atom
+   */
+  private final static double SHELL_RANGE_MAX = 10;
   
   // slater coefficients in Bohr
   private double[] CX, CY, CZ;
@@ -218,11 +229,85 @@ public class MOCalculation extends QuantumCalculation {
   @Override
   public void createCube() {
     setXYZBohr(points);
-    processPoints();
+    if (!processSlabs())
+      processPoints();
     if (!isSquaredLinear && (doDebug || testing))
       calculateElectronDensity();
   }
 
+  /**
+   * Evaluate the grid in parallel. The grid is split into slabs of x planes,
+   * and each slab is calculated over all shells by its own copy of this
+   * calculation, with its own coordinate, coefficient, and exponential work
+   * arrays. Each voxel therefore gets exactly the same sum, in the same
+   * order, as in the serial calculation.
+   * 
+   * @return true if the calculation was done here
+   */
+  private boolean processSlabs() {
+    int nTasks = (points == null ? ParallelTasks.getTaskCount(multiProcessor, nX, 4) : 1);
+    if (nTasks < 2)
+      return false;
+    final MOCalculation[] calcs = new MOCalculation[nTasks];
+    calcs[0] = this;
+    for (int i = 1; i < nTasks; i++)
+      calcs[i] = getSlabCopy();
+    try {
+      ParallelTasks.runTasks(nX, nTasks, new ParallelTasks.Block() {
+        @Override
+        public void run(int task, int i0, int i1) {
+          MOCalculation c = calcs[task];
+          c.xSlabMin = i0;
+          c.xSlabMax = i1;
+          c.processPoints();
+        }
+      });
+    } finally {
+      xSlabMin = 0;
+      xSlabMax = Integer.MAX_VALUE;
+    }
+    return true;
+  }
+
+  /**
+   * @return a calculation sharing this one's basis, coefficients, and grid,
+   *         but with its own work arrays
+   */
+  private MOCalculation getSlabCopy() {
+    MOCalculation c = new MOCalculation();
+    c.calculationType = calculationType;
+    c.firstAtomOffset = firstAtomOffset;
+    c.shells = shells;
+    c.gaussians = gaussians;
+    c.slaters = slaters;
+    c.highLEnabled = highLEnabled;
+    c.dfCoefMaps = dfCoefMaps;
+    c.coeffs = new double[coeffs.length];
+    c.moCoefficients = moCoefficients;
+    c.linearCombination = linearCombination;
+    c.isSquaredLinear = isSquaredLinear;
+    c.coefs = coefs;
+    c.normType = normType;
+    c.moFactor = moFactor;
+    c.countsXYZ = countsXYZ;
+    c.initialize(nX, nY, nZ, null);
+    c.voxelData = voxelData;
+    c.voxelDataTemp = voxelDataTemp;
+    c.xBohr = xBohr;
+    c.yBohr = yBohr;
+    c.zBohr = zBohr;
+    c.originBohr = originBohr;
+    c.stepBohr = stepBohr;
+    c.volume = volume;
+    c.rangeBohrOrAngstroms = rangeBohrOrAngstroms;
+    c.unitFactor = unitFactor;
+    c.qmAtoms = new QMAtom[qmAtoms.length];
+    for (int i = qmAtoms.length; --i >= 0;)
+      if (qmAtoms[i] != null)
+        c.qmAtoms[i] = new QMAtom(qmAtoms[i], c.X, c.Y, c.Z, c.X2, c.Y2, c.Z2);
+    return c;
+  }
+
   double sum = -1;
   
   @Override
@@ -335,7 +420,8 @@ public class MOCalculation extends QuantumCalculation {
     if (atomIndex != lastAtom && (thisAtom = qmAtoms[atomIndex]) != null)
       thisAtom.setXYZ(this, true);
     // order of terms here is critical -- setCoeffs increments moCoeff
-    if (!setCoeffs(shell[1], true) || !allowType(basisType))
+    if (!setCoeffs(shell[1], true) || !allowType(basisType)
+        || !havePoints && !setShellRange(basisType))
       return;
     if (havePoints)
       setMinMax(-1);
@@ -369,6 +455,55 @@ public class MOCalculation extends QuantumCalculation {
     }
   }
   
+  /**
+   * Screen this shell. The box of grid points around the atom is reduced to
+   * the radius beyond which no primitive of the shell can contribute more
+   * than SHELL_CUTOFF, using a generous bound on the normalized primitive,
+   * 
+   * 2^(l+1) alpha^(3/4 + l/2) |c| |m| r^l exp(-alpha r^2)
+   * 
+   * For all but the most diffuse functions this is far smaller than the
+   * default 10-Bohr box, so the cost of a large molecule grows roughly with
+   * the number of atoms rather than atoms x grid points.
+   * 
+   * @param basisType
+   * @return false if the shell can be skipped entirely
+   */
+  private boolean setShellRange(int basisType) {
+    int l = (basisType == QS.S ? 0 : basisType <= QS.SP ? 1
+        : (basisType + 1) / 2);
+    double cMax = 0;
+    for (int i = map.length; --i >= 0;)
+      cMax = Math.max(cMax, Math.abs(coeffs[i]));
+    cMax *= Math.abs(moFactor) * (2 << l);
+    double r2Max = 0;
+    for (int ig = 0; ig < nGaussians; ig++) {
+      double[] g = gaussians[gaussianPtr + ig];
+      double alpha = g[0];
+      double c = 0;
+      for (int j = g.length; --j >= 1;)
+        c = Math.max(c, Math.abs(g[j]));
+      double lnA = Math.log(c * cMax
+          * Math.max(1, Math.pow(alpha, 0.75 + l / 2d)) / SHELL_CUTOFF);
+      if (!(lnA > 0) || !(alpha > 0))
+        continue;
+      double r2 = lnA / alpha;
+      // r^l exp(-alpha r^2) = cutoff/A; a few iterations are plenty
+      for (int i = (l == 0 ? 0 : 3); --i >= 0 && r2 > 0;)
+        r2 = (lnA + l * 0.5 * Math.log(r2)) / alpha;
+      if (r2 > r2Max)
+        r2Max = r2;
+    }
+    if (r2Max == 0)
+      return false;
+    double r = Math.min(Math.sqrt(r2Max), SHELL_RANGE_MAX);
+    if (r != rangeBohrOrAngstroms) {
+      rangeBohrOrAngstroms = r;
+      thisAtom.setXYZ(this, true);
+    }
+    return true;
+  }
+
   DataAdder[] dataAdders = new DataAdder[20];
   int[] dataAdderOK = new int[20];
   
@@ -404,7 +539,7 @@ public class MOCalculation extends QuantumCalculation {
   }
 
   private void addValuesSquared(double occupancy) {
-    for (int ix = nX; --ix >= 0;) {
+    for (int ix = Math.min(nX, xSlabMax); --ix >= xSlabMin;) {
       for (int iy = nY; --iy >= 0;) {
         for (int iz = nZ; --iz >= 0;) {
           double value = voxelDataTemp[ix][iy][iz];
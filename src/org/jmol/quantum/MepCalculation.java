@@ -30,6 +30,7 @@ import java.util.Map;
 import javajs.util.P3d;
 import javajs.util.PT;
 import javajs.util.Rdr;
+import javajs.util.T3d;
 
 import javajs.util.BS;
 import org.jmol.jvxl.data.VolumeData;
@@ -182,6 +183,27 @@ public class MepCalculation extends QuantumCalculation {
     
   }
 
+  /**
+   * d/dr of valueFor(1, r^2, distanceMode)
+   * 
+   * @param d
+   * @param distanceMode
+   * @return slope at distance d
+   */
+  private static double slopeFor(double d, int distanceMode) {
+    switch (distanceMode) {
+    case ONE_OVER_D:
+      return -1 / (d * d);
+    case ONE_OVER_ONE_PLUS_D:
+      return -1 / ((1 + d) * (1 + d));
+    case E_MINUS_D_OVER_2:
+      return -Math.exp(-d / 2) / 2;
+    case E_MINUS_D:
+      return -Math.exp(-d);
+    }
+    return 0;
+  }
+
   public double valueFor(double x0, double d2, int distanceMode) {
     switch (distanceMode) {
     case ONE_OVER_D:
@@ -251,4 +273,198 @@ public class MepCalculation extends QuantumCalculation {
     // not relevant
   }
 
+  ////////////// Barnes-Hut tree for mapping onto surfaces ////////////////
+
+  // For a large set of atoms, mapping a potential onto a surface is
+  // O(atoms x vertices). Here the atoms are sorted into an octree, and a
+  // cell that is small compared to its distance from the point is replaced
+  // by its total potential and first moment about its center:
+  //
+  //   sum(q_i f(|r - c - s_i|)) ~ Q f(R) - f'(R) (R/|R|).D
+  //
+  // where R = r - c, Q = sum(q_i), and D = sum(q_i s_i). The error is of
+  // order (cell radius / R)^2, so treeTheta, the largest cell radius/distance
+  // ratio that is approximated, sets the accuracy. 0 means exact.
+
+  private final static int TREE_LEAF_MAX = 8;
+
+  private MepNode treeRoot;
+  private P3d[] treeXyz;
+  private double[] treeQ;
+  private int treeMode;
+  private double treeTheta;
+
+  private class MepNode {
+    double cx, cy, cz, r, q, dx, dy, dz;
+    int[] atoms; // leaf only
+    MepNode[] children;
+  }
+
+  /**
+   * Build a tree for getTreeValue and getNearestAtom.
+   * 
+   * @param xyz
+   *        atom coordinates
+   * @param q
+   *        atom potentials; NaN for atoms to skip
+   * @param n
+   *        number of atoms
+   * @param calcType
+   *        distance function, or -1 for this calculation's default
+   * @param theta
+   *        largest cell radius/distance ratio to approximate
+   * @return true if a tree was created
+   */
+  public boolean setTree(P3d[] xyz, double[] q, int n, int calcType,
+                         double theta) {
+    treeRoot = null;
+    if (theta <= 0)
+      return false;
+    int[] list = new int[n];
+    int nq = 0;
+    for (int i = 0; i < n; i++)
+      if (xyz[i] != null && !Double.isNaN(q[i]))
+        list[nq++] = i;
+    if (nq == 0)
+      return false;
+    treeXyz = xyz;
+    treeQ = q;
+    treeMode = (calcType >= 0 ? calcType : distanceMode);
+    treeTheta = theta;
+    int[] atoms = new int[nq];
+    System.arraycopy(list, 0, atoms, 0, nq);
+    treeRoot = newNode(atoms);
+    return true;
+  }
+
+  private MepNode newNode(int[] atoms) {
+    MepNode node = new MepNode();
+    int n = atoms.length;
+    double x0 = Double.MAX_VALUE, y0 = x0, z0 = x0;
+    double x1 = -x0, y1 = x1, z1 = x1;
+    for (int i = n; --i >= 0;) {
+      P3d a = treeXyz[atoms[i]];
+      node.cx += a.x;
+      node.cy += a.y;
+      node.cz += a.z;
+      x0 = Math.min(x0, a.x);
+      y0 = Math.min(y0, a.y);
+      z0 = Math.min(z0, a.z);
+      x1 = Math.max(x1, a.x);
+      y1 = Math.max(y1, a.y);
+      z1 = Math.max(z1, a.z);
+    }
+    node.cx /= n;
+    node.cy /= n;
+    node.cz /= n;
+    double r2 = 0;
+    for (int i = n; --i >= 0;) {
+      int ia = atoms[i];
+      P3d a = treeXyz[ia];
+      double q = treeQ[ia];
+      double dx = a.x - node.cx;
+      double dy = a.y - node.cy;
+      double dz = a.z - node.cz;
+      node.q += q;
+      node.dx += q * dx;
+      node.dy += q * dy;
+      node.dz += q * dz;
+      r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+    }
+    node.r = Math.sqrt(r2);
+    if (n <= TREE_LEAF_MAX || r2 == 0) {
+      node.atoms = atoms;
+      return node;
+    }
+    // split at the middle of the bounding box into (at most) eight octants
+    double mx = (x0 + x1) / 2, my = (y0 + y1) / 2, mz = (z0 + z1) / 2;
+    int[] octant = new int[n];
+    int[] counts = new int[8];
+    for (int i = n; --i >= 0;) {
+      P3d a = treeXyz[atoms[i]];
+      counts[octant[i] = (a.x > mx ? 4 : 0) | (a.y > my ? 2 : 0)
+          | (a.z > mz ? 1 : 0)]++;
+    }
+    int nChildren = 0;
+    for (int j = 0; j < 8; j++)
+      if (counts[j] > 0)
+        nChildren++;
+    node.children = new MepNode[nChildren];
+    for (int j = 0, c = 0; j < 8; j++) {
+      if (counts[j] == 0)
+        continue;
+      int[] sub = new int[counts[j]];
+      for (int i = 0, pt = 0; i < n; i++)
+        if (octant[i] == j)
+          sub[pt++] = atoms[i];
+      node.children[c++] = newNode(sub);
+    }
+    return node;
+  }
+
+  /**
+   * @param pt
+   * @return approximate total potential at pt from all tree atoms
+   */
+  public double getTreeValue(T3d pt) {
+    return (treeRoot == null ? 0 : getNodeValue(treeRoot, pt));
+  }
+
+  private double getNodeValue(MepNode node, T3d pt) {
+    double rx = pt.x - node.cx;
+    double ry = pt.y - node.cy;
+    double rz = pt.z - node.cz;
+    double d = Math.sqrt(rx * rx + ry * ry + rz * rz);
+    if (node.r < treeTheta * d)
+      return valueFor(node.q, d * d, treeMode) - slopeFor(d, treeMode)
+          * (rx * node.dx + ry * node.dy + rz * node.dz) / d;
+    double value = 0;
+    if (node.atoms == null) {
+      for (int i = 0; i < node.children.length; i++)
+        value += getNodeValue(node.children[i], pt);
+    } else {
+      for (int i = 0; i < node.atoms.length; i++) {
+        int ia = node.atoms[i];
+        value += valueFor(treeQ[ia], pt.distanceSquared(treeXyz[ia]), treeMode);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @param pt
+   * @param iMax
+   *        only atoms with index less than this are considered
+   * @return index of the tree atom closest to pt, or -1
+   */
+  public int getNearestAtom(T3d pt, int iMax) {
+    double[] best = new double[] { Double.MAX_VALUE, -1 };
+    if (treeRoot != null)
+      getNearest(treeRoot, pt, iMax, best);
+    return (int) best[1];
+  }
+
+  private void getNearest(MepNode node, T3d pt, int iMax, double[] best) {
+    double rx = pt.x - node.cx;
+    double ry = pt.y - node.cy;
+    double rz = pt.z - node.cz;
+    double d = Math.sqrt(rx * rx + ry * ry + rz * rz) - node.r;
+    if (d > 0 && d * d >= best[0])
+      return;
+    if (node.atoms == null) {
+      for (int i = 0; i < node.children.length; i++)
+        getNearest(node.children[i], pt, iMax, best);
+      return;
+    }
+    for (int i = 0; i < node.atoms.length; i++) {
+      int ia = node.atoms[i];
+      double d2;
+      if (ia < iMax && ((d2 = pt.distanceSquared(treeXyz[ia])) < best[0]
+          || d2 == best[0] && ia < best[1])) {
+        best[0] = d2;
+        best[1] = ia;
+      }
+    }
+  }
+
 }
@@ -29,6 +29,7 @@ import javajs.util.T3d;
 
 import javajs.util.BS;
 import org.jmol.jvxl.data.VolumeData;
+import org.jmol.thread.ParallelTasks;
 import org.jmol.util.BSUtil;
 import org.jmol.util.Escape;
 import org.jmol.util.Logger;
@@ -258,10 +259,14 @@ public class NciCalculation extends QuantumPlaneCalculation {
       return;
     bsOK = BS.newN(nX * nY * nZ);
     setXYZBohr(null);
-    for (int ix = 0, index = 0; ix < countsXYZ[0]; ix++)
-      for (int iy = 0; iy < countsXYZ[1]; iy++)
+    for (int ix = 0, index = 0; ix < countsXYZ[0]; ix++) {
+      setPlaneAtoms(ix);
+      for (int iy = 0; iy < countsXYZ[1]; iy++) {
+        setRowAtoms(planeAtoms, nPlaneAtoms, iy);
         for (int iz = 0; iz < countsXYZ[2]; index++, iz++)
           processAtoms(ix, iy, iz, index);
+      }
+    }
     Logger.info("NCI calculation SCF " + (type == TYPE_INTRA ? "intra" : "inter") + "molecular grid points = " + bsOK.cardinality());
   }
 
@@ -290,6 +295,14 @@ public class NciCalculation extends QuantumPlaneCalculation {
   private static double rpower = -4/3d;
   private double[][] hess;
   private double grad, gxTemp, gyTemp, gzTemp, gxxTemp, gyyTemp, gzzTemp, gxyTemp, gyzTemp, gxzTemp;
+
+  private final static int MIN_ROWS = 2;
+
+  private NciCalculation[] taskCalcs;
+
+  // atoms within dMax of the current plane and row, by qmAtoms index
+  private int[] planeAtoms, rowAtoms;
+  private int nPlaneAtoms, nRowAtoms;
   
   @Override
   public void getPlane(int ix, double[] yzPlane) {
@@ -301,21 +314,74 @@ public class NciCalculation extends QuantumPlaneCalculation {
     isReducedDensity = true;
     initialize(countsXYZ[0], countsXYZ[1], countsXYZ[2], null);
     setXYZBohr(null);
+    setPlaneAtoms(ix);
+    int nTasks = ParallelTasks.getTaskCount(multiProcessor, countsXYZ[1], MIN_ROWS);
+    if (nTasks < 2) {
+      getPlaneRows(ix, 0, countsXYZ[1], yzPlane, planeAtoms, nPlaneAtoms);
+      return;
+    }
+    final NciCalculation[] calcs = getTaskCalcs(nTasks);
+    final int x = ix;
+    final double[] plane = yzPlane;
+    final int[] atoms = planeAtoms;
+    final int n = nPlaneAtoms;
+    ParallelTasks.runTasks(countsXYZ[1], nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        calcs[task].getPlaneRows(x, i0, i1, plane, atoms, n);
+      }
+    });
+  }
+
+  /**
+   * Fill rows y0 through y1 - 1 of the plane at x = ix. Each row only
+   * visits the atoms that are within range of it.
+   * 
+   * @param ix
+   * @param y0
+   * @param y1
+   * @param yzPlane
+   * @param atoms
+   *        atoms within range of this plane
+   * @param n
+   */
+  private void getPlaneRows(int ix, int y0, int y1, double[] yzPlane,
+                            int[] atoms, int n) {
+    int nz = countsXYZ[2];
     int index = ix * yzCount;
-    for (int iy = 0, i = 0; iy < countsXYZ[1]; iy++)
-      for (int iz = 0; iz < countsXYZ[2]; i++, iz++)
+    for (int iy = y0, i = y0 * nz; iy < y1; iy++) {
+      setRowAtoms(atoms, n, iy);
+      for (int iz = 0; iz < nz; i++, iz++)
         if (bsOK == null || bsOK.get(index + i))
           yzPlane[i] = getValue(processAtoms(ix, iy, iz, -1), isReducedDensity);
         else
           yzPlane[i] = Double.NaN;
+    }
   }
 
   @Override
   protected void process() {
     if (noValuesAtAll)
       return;
-    for (int ix = xMax; --ix >= xMin;) {
+    int nTasks = (havePoints ? 1 : ParallelTasks.getTaskCount(multiProcessor, xMax - xMin, 2));
+    if (nTasks < 2) {
+      processSlab(xMin, xMax);
+      return;
+    }
+    final NciCalculation[] calcs = getTaskCalcs(nTasks);
+    ParallelTasks.runTasks(xMax - xMin, nTasks, new ParallelTasks.Block() {
+      @Override
+      public void run(int task, int i0, int i1) {
+        calcs[task].processSlab(xMin + i0, xMin + i1);
+      }
+    });
+  }
+
+  private void processSlab(int x0, int x1) {
+    for (int ix = x1; --ix >= x0;) {
+      setPlaneAtoms(ix);
       for (int iy = yMin; iy < yMax; iy++) {
+        setRowAtoms(planeAtoms, nPlaneAtoms, iy);
         double[] vd = voxelData[ix][(havePoints ? 0 : iy)];
         for (int iz = zMin; iz < zMax; iz++)
           vd[(havePoints ? 0 : iz)] = getValue(processAtoms(ix, iy, iz, -1), isReducedDensity);
@@ -329,6 +395,97 @@ public class NciCalculation extends QuantumPlaneCalculation {
       }
     }
 */  }
+
+  /**
+   * Task 0 is this calculation; the others share its atoms, grid, and
+   * parameters, but each has its own gradient, Hessian, and
+   * per-molecule work space.
+   * 
+   * @param nTasks
+   * @return calculations, one per task
+   */
+  private NciCalculation[] getTaskCalcs(int nTasks) {
+    if (taskCalcs == null || taskCalcs.length < nTasks) {
+      taskCalcs = new NciCalculation[nTasks];
+      taskCalcs[0] = this;
+    }
+    for (int i = 1; i < nTasks; i++) {
+      NciCalculation c = taskCalcs[i];
+      if (c == null) {
+        c = taskCalcs[i] = new NciCalculation();
+        if (rhoMolecules != null)
+          c.rhoMolecules = new double[rhoMolecules.length];
+      }
+      if (eigen != null && c.eigen == null)
+        c.initializeEigen();
+      c.isReducedDensity = isReducedDensity;
+      c.isPromolecular = isPromolecular;
+      c.useAbsolute = useAbsolute;
+      c.havePoints = havePoints;
+      c.type = type;
+      c.nMolecules = nMolecules;
+      c.rhoMin = rhoMin;
+      c.rhoPlot = rhoPlot;
+      c.rhoParam = rhoParam;
+      c.bsOK = bsOK;
+      c.yzCount = yzCount;
+      c.countsXYZ = countsXYZ;
+      c.qmAtoms = qmAtoms;
+      c.voxelData = voxelData;
+      c.xBohr = xBohr;
+      c.yBohr = yBohr;
+      c.zBohr = zBohr;
+      c.nX = nX;
+      c.nY = nY;
+      c.nZ = nZ;
+      c.yMin = yMin;
+      c.yMax = yMax;
+      c.zMin = zMin;
+      c.zMax = zMax;
+    }
+    return taskCalcs;
+  }
+
+  /**
+   * Collect the atoms close enough to plane x = ix to contribute to it,
+   * in the order that processAtoms sums them.
+   * 
+   * @param ix
+   */
+  private void setPlaneAtoms(int ix) {
+    if (planeAtoms == null || planeAtoms.length < qmAtoms.length)
+      planeAtoms = new int[qmAtoms.length];
+    double x = xBohr[ix];
+    int n = 0;
+    for (int i = qmAtoms.length; --i >= 0;) {
+      QMAtom a = qmAtoms[i];
+      if (a == null || Math.abs(x - a.x) > dMax[a.znuc])
+        continue;
+      planeAtoms[n++] = i;
+    }
+    nPlaneAtoms = n;
+  }
+
+  /**
+   * Narrow a plane's atom list down to those close enough to row iy.
+   * 
+   * @param atoms
+   * @param n
+   * @param iy
+   */
+  private void setRowAtoms(int[] atoms, int n, int iy) {
+    if (rowAtoms == null || rowAtoms.length < n)
+      rowAtoms = new int[atoms.length];
+    double y = yBohr[iy];
+    int nRow = 0;
+    for (int j = 0; j < n; j++) {
+      QMAtom a = qmAtoms[atoms[j]];
+      if (Math.abs(y - a.y) > dMax[a.znuc])
+        continue;
+      rowAtoms[nRow++] = atoms[j];
+    }
+    nRowAtoms = nRow;
+  }
   
   private double[] eigenValues = new double[3];
   
@@ -359,7 +516,8 @@ public class NciCalculation extends QuantumPlaneCalculation {
    *  atom-based promolecular data. We partition this calculation
    *  into molecular subsets if necessary, and we check for atoms
    *  that are too far away to make a difference before we waste 
-   *  time doing exponentiation.
+   *  time doing exponentiation. Only the atoms in range of the current
+   *  row, as set by setPlaneAtoms and setRowAtoms, are visited at all.
    *  
    *  If index >= 0, then this is just a check for intra- vs. inter-
    *  molecularity based on promolecular density. This is needed for 
@@ -382,13 +540,13 @@ public class NciCalculation extends QuantumPlaneCalculation {
     } else {
       gxxTemp = gyyTemp = gzzTemp = gxyTemp = gyzTemp = gxzTemp = 0;
     }
-    for (int i = qmAtoms.length; --i >= 0;) {
+    for (int j = 0; j < nRowAtoms; j++) {
+      int i = rowAtoms[j];
       int znuc = qmAtoms[i].znuc;
       double x = xBohr[ix] - qmAtoms[i].x;
       double y = yBohr[iy] - qmAtoms[i].y;
       double z = zBohr[iz] - qmAtoms[i].z;
-      if (Math.abs(x) > dMax[znuc] || Math.abs(y) > dMax[znuc]
-          || Math.abs(z) > dMax[znuc])
+      if (Math.abs(z) > dMax[znuc])
         continue;
       double r = Math.sqrt(x * x + y * y + z * z);
       double z1 = zeta1[znuc];
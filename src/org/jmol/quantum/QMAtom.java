@@ -74,6 +74,32 @@ class QMAtom extends P3d {
     znuc = atom.getElementNumber();
   }
 
+  /**
+   * a copy of this atom working with a different set of grid arrays
+   * 
+   * @param a
+   * @param X
+   * @param Y
+   * @param Z
+   * @param X2
+   * @param Y2
+   * @param Z2
+   */
+  QMAtom(QMAtom a, double[] X, double[] Y, double[] Z, double[] X2,
+      double[] Y2, double[] Z2) {
+    index = a.index;
+    myX = X;
+    myY = Y;
+    myZ = Z;
+    myX2 = X2;
+    myY2 = Y2;
+    myZ2 = Z2;
+    atom = a.atom;
+    setT(a);
+    znuc = a.znuc;
+    iMolecule = a.iMolecule;
+  }
+
   protected void setXYZ(QuantumCalculation qc, boolean setMinMax) {
     int i;
     try {
@@ -88,6 +114,10 @@ class QMAtom extends P3d {
           i = (int) Math.floor(1 + (x - qc.xBohr[0] + qc.rangeBohrOrAngstroms)
               / qc.stepBohr[0]);
           qc.xMax = (i >= qc.nX ? qc.nX : i + 1);
+          if (qc.xMin < qc.xSlabMin)
+            qc.xMin = qc.xSlabMin;
+          if (qc.xMax > qc.xSlabMax)
+            qc.xMax = qc.xSlabMax;
           i = (int) Math.floor((y - qc.yBohr[0] - qc.rangeBohrOrAngstroms)
               / qc.stepBohr[1]);
           qc.yMin = (i < 0 ? 0 : i);
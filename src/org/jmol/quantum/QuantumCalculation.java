@@ -36,6 +36,7 @@ import org.jmol.util.Logger;
 abstract public class QuantumCalculation {
 
   protected boolean doDebug = false;
+  public boolean multiProcessor = true; // set by the reader from params
   protected BS bsExcluded;
 
   protected double integration = Double.NaN;
@@ -69,6 +70,9 @@ abstract public class QuantumCalculation {
   protected double[] originBohr = new double[3];
   protected double[] stepBohr = new double[3];
   protected int nX, nY, nZ;
+
+  // limits on x for a calculation working on just one slab of the grid
+  protected int xSlabMin = 0, xSlabMax = Integer.MAX_VALUE;
   
   // grid coordinates relative to orbital center in Bohr 
   public double[] X, Y, Z;
@@ -149,9 +149,141 @@ public class ScriptCompiler extends ScriptTokenParser {
   private ScriptFlowContext forceFlowContext;
   private boolean isWhere;
 
+  /**
+   * compiled scripts, keyed by compile state, flags, file name, and script
+   * text; cacheKeys holds the least recently used first
+   */
+  private Map<String, ScriptContext> htCache;
+  private Lst<String> cacheKeys;
+  private int cacheHits, cacheMisses;
+
+  private final static int CACHE_SIZE = 32;
+  private final static int CACHE_MAX_LENGTH = 100000;
+
   synchronized ScriptContext compile(String filename, String script,
                                      boolean isPredefining, boolean isSilent,
                                      boolean debugScript, boolean isCheckOnly) {
+    String key = getCacheKey(filename, script, isPredefining, isSilent,
+        debugScript, isCheckOnly);
+    if (key != null) {
+      ScriptContext sc = getCachedContext(key);
+      if (sc != null)
+        return sc;
+    }
+    ScriptContext sc = compile1(filename, script, isPredefining, isSilent,
+        debugScript, isCheckOnly);
+    // state scripts are not cached, because compile0 must set their
+    // version-dependent legacy flags every time they are run
+    if (key != null && sc.errorType == null && sc.isComplete && !isStateScript)
+      cacheContext(filename, script, isPredefining, isSilent, isCheckOnly, sc);
+    return sc;
+  }
+
+  /**
+   * Compilation depends upon the viewer only through its function names and
+   * chain IDs, both of which are covered by vwr.compileStateID.
+   * 
+   * @param filename
+   * @param script
+   * @param isPredefining
+   * @param isSilent
+   * @param debugScript
+   * @param isCheckOnly
+   * @return key, or null if this script should not be cached
+   */
+  private String getCacheKey(String filename, String script,
+                             boolean isPredefining, boolean isSilent,
+                             boolean debugScript, boolean isCheckOnly) {
+    if (debugScript || script.length() > CACHE_MAX_LENGTH)
+      return null;
+    return vwr.compileStateID + "/" + vwr.getFunctions(true).size() + "/"
+        + (isPredefining ? "p" : "") + (isSilent ? "s" : "")
+        + (isCheckOnly ? "c" : "") + "/" + filename + "\n" + script;
+  }
+
+  /**
+   * A cached context shares the token arrays of the original; ScriptContext
+   * restores their flow pointers whenever it is run, just as for a function
+   * that is called repeatedly. Only the context variables are new.
+   * 
+   * @param key
+   * @return a new context or null
+   */
+  private ScriptContext getCachedContext(String key) {
+    ScriptContext sc0 = (htCache == null ? null : htCache.get(key));
+    if (sc0 == null) {
+      cacheMisses++;
+      return null;
+    }
+    cacheHits++;
+    cacheKeys.removeObj(key);
+    cacheKeys.addLast(key);
+    isStateScript = false;
+    ScriptContext sc = new ScriptContext();
+    sc.isComplete = true;
+    sc.script = sc0.script;
+    sc.scriptExtensions = sc0.scriptExtensions;
+    sc.isEditor = sc0.isEditor;
+    sc.shareTokens(sc0);
+    sc.lineIndices = sc0.lineIndices;
+    sc.lineNumbers = sc0.lineNumbers;
+    if (sc0.vars != null) {
+      sc.vars = new Hashtable<String, SV>();
+      for (String name : sc0.vars.keySet())
+        addContextVariable(sc.vars, name);
+    }
+    return sc;
+  }
+
+  private void cacheContext(String filename, String script,
+                            boolean isPredefining, boolean isSilent,
+                            boolean isCheckOnly, ScriptContext sc) {
+    if (htCache == null) {
+      htCache = new Hashtable<String, ScriptContext>();
+      cacheKeys = new Lst<String>();
+    }
+    // the key as of now, since compiling may have added chain IDs
+    String key = getCacheKey(filename, script, isPredefining, isSilent,
+        false, isCheckOnly);
+    ScriptContext sc0 = new ScriptContext();
+    sc0.script = sc.script;
+    sc0.scriptExtensions = sc.scriptExtensions;
+    sc0.isEditor = sc.isEditor;
+    sc0.shareTokens(sc);
+    sc0.lineIndices = sc.lineIndices;
+    sc0.lineNumbers = sc.lineNumbers;
+    if (sc.vars != null) {
+      sc0.vars = new Hashtable<String, SV>();
+      for (String name : sc.vars.keySet())
+        addContextVariable(sc0.vars, name);
+    }
+    if (htCache.put(key, sc0) == null)
+      cacheKeys.addLast(key);
+    else {
+      cacheKeys.removeObj(key);
+      cacheKeys.addLast(key);
+    }
+    if (cacheKeys.size() > CACHE_SIZE)
+      htCache.remove(cacheKeys.removeItemAt(0));
+  }
+
+  /**
+   * for getProperty("scriptCacheInfo")
+   * 
+   * @return map of size, maxSize, hits, and misses
+   */
+  public Map<String, Object> getCacheInfo() {
+    Map<String, Object> info = new Hashtable<String, Object>();
+    info.put("size", Integer.valueOf(cacheKeys == null ? 0 : cacheKeys.size()));
+    info.put("maxSize", Integer.valueOf(CACHE_SIZE));
+    info.put("hits", Integer.valueOf(cacheHits));
+    info.put("misses", Integer.valueOf(cacheMisses));
+    return info;
+  }
+
+  private ScriptContext compile1(String filename, String script,
+                                 boolean isPredefining, boolean isSilent,
+                                 boolean debugScript, boolean isCheckOnly) {
     this.isCheckOnly = isCheckOnly;
     this.filename = filename;
     this.isSilent = isSilent;
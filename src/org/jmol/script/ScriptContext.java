@@ -154,6 +154,17 @@ public class ScriptContext {
       pointers[i] = (aa[i] == null ? -1 : aa[i][0].intValue);
   }
   
+  /**
+   * use the compiled tokens of another context, along with the flow pointers
+   * they had when compiled
+   * 
+   * @param sc
+   */
+  void shareTokens(ScriptContext sc) {
+    aatoken = sc.aatoken;
+    pointers = sc.pointers;
+  }
+
   T[][] restoreTokens() {
     if (pointers != null)
       for (int i = pointers.length; --i >= 0;)
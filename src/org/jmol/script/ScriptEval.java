@@ -1480,15 +1480,26 @@ public class ScriptEval extends ScriptExpr {
 
     // priority is given to a defined variable.
 
-    BS bs = lookupValue(identifier, false);
+    BS bs = lookupDefinedValue(identifier);
     if (bs != null)
-      return BSUtil.copy(bs);
+      return bs;
 
     // next we look for names of groups (PDB) or atoms (non-PDB)
     bs = getAtomBits(T.identifier, identifier);
     return (bs == null ? new BS() : bs);
   }
 
+  /**
+   * @param identifier
+   * @return a new copy of a predefined or user-defined atom set, or null if
+   *         identifier is not defined
+   * @throws ScriptException
+   */
+  BS lookupDefinedValue(String identifier) throws ScriptException {
+    BS bs = lookupValue(identifier, false);
+    return (bs == null ? null : BSUtil.copy(bs));
+  }
+
   private BS lookupValue(String setName, boolean plurals)
       throws ScriptException {
     if (chk) {
@@ -2529,6 +2540,51 @@ public class ScriptEval extends ScriptExpr {
         null);
   }
 
+  /**
+   * lowered math for each statement of the most recently run scripts, as
+   * {aatoken, ScriptMathCode[]}, most recent first; a script and its functions
+   * are each their own entry
+   */
+  private Lst<Object[]> mathCodeCache;
+  private T[][] mathCodeTokens;
+  private ScriptMathCode[] mathCodes;
+
+  private final static int MATH_CODE_CACHE_SIZE = 8;
+
+  @Override
+  protected ScriptMathCode getMathCode(int pt, int ptMax) {
+    if (chk || aatoken == null || pc >= aatoken.length || st != aatoken[pc])
+      return null;
+    if (aatoken != mathCodeTokens) {
+      if (mathCodeCache == null)
+        mathCodeCache = new Lst<Object[]>();
+      Object[] o = null;
+      for (int i = mathCodeCache.size(); --i >= 0;)
+        if (mathCodeCache.get(i)[0] == aatoken) {
+          o = mathCodeCache.removeItemAt(i);
+          break;
+        }
+      if (o == null) {
+        if (mathCodeCache.size() == MATH_CODE_CACHE_SIZE)
+          mathCodeCache.removeItemAt(MATH_CODE_CACHE_SIZE - 1);
+        o = new Object[] { aatoken, new ScriptMathCode[aatoken.length] };
+      }
+      mathCodeCache.add(0, o);
+      mathCodeTokens = aatoken;
+      mathCodes = (ScriptMathCode[]) o[1];
+    }
+    ScriptMathCode mc = mathCodes[pc];
+    while (mc != null && (mc.pt != pt || mc.ptMax != ptMax))
+      mc = mc.next;
+    if (mc == null) {
+      // not valid ones, too, so that we do not try again
+      mc = new ScriptMathCode(st, slen, pt, ptMax);
+      mc.next = mathCodes[pc];
+      mathCodes[pc] = mc;
+    }
+    return (mc.isValid ? mc : null);
+  }
+
   private void processCommand(int tok) throws ScriptException {
     if (T.tokAttr(theToken.tok, T.shapeCommand)) {
       processShapeCommand(tok);
@@ -94,6 +94,11 @@ abstract class ScriptExpr extends ScriptParam {
 
   protected boolean parameterExpressionBoolean(int pt, int ptMax)
       throws ScriptException {
+    ScriptMathCode mc = getMathCode(pt, ptMax);
+    if (mc != null && mc.run(this)) {
+      getToken(mc.ptEnd);
+      return mc.getBoolean();
+    }
     return ((Boolean) parameterExpression(pt, ptMax, null, true, false, -1,
         false, null, null, false)).booleanValue();
   }
@@ -175,8 +180,8 @@ abstract class ScriptExpr extends ScriptParam {
       ptMax = slen;
     int ptEq = (isSpecialAssignment ? 0 : 1);
     int ptWithin = -1;
-    ScriptMathProcessor rpn = new ScriptMathProcessor(this,
-        isSpecialAssignment, isArrayItem, asVector, false, false, key);
+    ScriptMathProcessor rpn = getMathProcessor(isSpecialAssignment,
+        isArrayItem, asVector, false, false, key);
     Object v, res;
     int nSquare = 0;
     int nParen = 0;
@@ -666,6 +671,7 @@ abstract class ScriptExpr extends ScriptParam {
         rpn.dumpStacks("null result");
       error(ERROR_endOfStatementUnexpected);
     }
+    releaseMathProcessor(rpn);
     if (result.tok == T.vector) {
       if (isSpecialAssignment && ptEq == 0) {
         // no equal sign found! xxxxx.pop() for example
@@ -706,6 +712,60 @@ abstract class ScriptExpr extends ScriptParam {
 
   protected T[] tempStatement;
 
+  /**
+   * math processors finished with and ready for reuse; nested expressions
+   * each take their own
+   */
+  private ScriptMathProcessor[] rpnPool = new ScriptMathProcessor[4];
+  private int rpnPoolCount;
+
+  private ScriptMathProcessor getMathProcessor(boolean isSpecialAssignment,
+                                               boolean isArrayItem,
+                                               boolean asVector,
+                                               boolean asBitSet,
+                                               boolean allowUnderflow,
+                                               String key) {
+    return (rpnPoolCount > 0 ? rpnPool[--rpnPoolCount].reset(
+        isSpecialAssignment, isArrayItem, asVector, asBitSet, allowUnderflow,
+        key) : new ScriptMathProcessor(this, isSpecialAssignment, isArrayItem,
+        asVector, asBitSet, allowUnderflow, key));
+  }
+
+  /**
+   * Return a processor to the pool once its result has been taken. A
+   * processor abandoned by an exception is simply not returned.
+   * 
+   * @param rpn
+   */
+  private void releaseMathProcessor(ScriptMathProcessor rpn) {
+    if (rpnPoolCount < rpnPool.length)
+      rpnPool[rpnPoolCount++] = rpn;
+  }
+
+  /**
+   * @param pt
+   * @param ptMax
+   * @return the lowered form of this range of the current statement, if it is
+   *         a simple numeric or boolean expression, or null
+   */
+  abstract protected ScriptMathCode getMathCode(int pt, int ptMax);
+
+  /**
+   * Variable lookup for ScriptMathCode, the same as in parameterExpression for
+   * a name not starting with "_".
+   *
+   * @param name
+   *        lower-case name
+   * @return the variable or null if this is a function
+   */
+  SV getMathCodeVariable(String name) {
+    SV v = (contextVariables == null ? null : contextVariables.get(name));
+    if (v == null && thisContext != null)
+      v = thisContext.getVariable(name);
+    return (v != null ? v : isFunction(name) ? null : vwr.g
+        .getAndSetNewVariable(name, false));
+  }
+
   public BS atomExpressionAt(int index) throws ScriptException {
     if (!checkToken(index)) {
       iToken = index;
@@ -741,8 +801,8 @@ abstract class ScriptExpr extends ScriptParam {
       tempStatement = st;
       st = code;
     }
-    ScriptMathProcessor rpn = new ScriptMathProcessor(this, false, false,
-        false, ret == null, allowUnderflow, null);
+    ScriptMathProcessor rpn = getMathProcessor(false, false, false,
+        ret == null, allowUnderflow, null);
     Object val;
     boolean refreshed = false;
     iToken = 1000;
@@ -790,7 +850,7 @@ abstract class ScriptExpr extends ScriptParam {
         break; // ignore otherwise
       case T.rightbrace:
         if (pc > 0 && code[pc - 1].tok == T.leftbrace)
-          rpn.addXBs(new BS());
+          rpn.addXBsTemp(new BS());
         break;
       case T.leftsquare:
         isInMath = true;
@@ -880,14 +940,14 @@ abstract class ScriptExpr extends ScriptParam {
         rpn.addXBs(vwr.getAllAtoms());
         break;
       case T.none:
-        rpn.addXBs(new BS());
+        rpn.addXBsTemp(new BS());
         break;
       case T.on:
       case T.off:
         rpn.addX(SV.newT(instruction));
         break;
       case T.selected:
-        rpn.addXBs(BSUtil.copy(vwr.bsA()));
+        rpn.addXBsTemp(BSUtil.copy(vwr.bsA()));
         break;
       //removed in 13.1.17. Undocumented; unneccessary (same as "all")
 
@@ -897,14 +957,14 @@ abstract class ScriptExpr extends ScriptParam {
       //    : BSUtil.copy(bsSubset));
       //break;
       case T.hidden:
-        rpn.addXBs(BSUtil.copy(vwr.slm.getHiddenSet()));
+        rpn.addXBsTemp(BSUtil.copy(vwr.slm.getHiddenSet()));
         break;
       case T.fixed:
         // note - this is only for the current model
         rpn.addXBs(vwr.getMotionFixedAtoms(null, null));
         break;
       case T.displayed:
-        rpn.addXBs(BSUtil.copyInvert(vwr.slm.getHiddenSet(), ac));
+        rpn.addXBsTemp(BSUtil.copyInvert(vwr.slm.getHiddenSet(), ac));
         break;
       case T.basemodel:
         rpn.addXBs(vwr.getBaseModelBitSet());
@@ -1017,7 +1077,7 @@ abstract class ScriptExpr extends ScriptParam {
       case T.helixpi:
       case T.sidechain:
       case T.surface:
-        rpn.addXBs(((ScriptEval) this).lookupIdentifierValue((String) value));
+        addIdentifierValue(rpn, (String) value);
         break;
       case T.opLT:
       case T.opLE:
@@ -1046,15 +1106,18 @@ abstract class ScriptExpr extends ScriptParam {
         }
         if (++pc == code.length)
           invArg(); // compiler would not let this happen, actually
-        rpn.addXBs(chk ? new BS() : getComparison(code[pc], tokWhat, tok, (String) value, data));
+        // comparisons always return a new bit set
+        rpn.addXBsTemp(chk ? new BS() : getComparison(code[pc], tokWhat, tok, (String) value, data));
         break;
       case T.decimal:
       case T.integer:
         rpn.addXNum(instruction);
         break;
       case T.bitset:
-        BS bs1 = (value instanceof BondSet ? (BondSet) value : BSUtil.copy((BS) value));
-        rpn.addXBs(bs1);
+        if (value instanceof BondSet)
+          rpn.addXBs((BondSet) value);
+        else
+          rpn.addXBsTemp(BSUtil.copy((BS) value));
         break;
       case T.point3f:
         rpn.addXPt((P3d) value);
@@ -1081,8 +1144,9 @@ abstract class ScriptExpr extends ScriptParam {
           val = getStringObjectAsVariable(val);
         // otherwise, this is a new atom expression
         if (val instanceof String)
-          val = ((ScriptEval) this).lookupIdentifierValue((String) value);
-        rpn.addXObj(val);
+          addIdentifierValue(rpn, (String) value);
+        else
+          rpn.addXObj(val);
         break;
       }
     }
@@ -1094,6 +1158,7 @@ abstract class ScriptExpr extends ScriptParam {
         rpn.dumpStacks("after getResult");
       error(ERROR_endOfStatementUnexpected);
     }
+    releaseMathProcessor(rpn);
     Object exp = expressionResult.value;
     if (exp instanceof String
         && (ret == null || ((String) exp).startsWith("({"))) {
@@ -1116,6 +1181,28 @@ abstract class ScriptExpr extends ScriptParam {
     return bs;
   }
 
+  /**
+   * Add the atoms for a name such as "carbon" or "helix". Only a defined set,
+   * for which lookupDefinedValue always returns a new copy, is added as a
+   * temporary that operators can modify in place; the result of getAtomBits
+   * is not.
+   * 
+   * @param rpn
+   * @param name
+   * @throws ScriptException
+   */
+  private void addIdentifierValue(ScriptMathProcessor rpn, String name)
+      throws ScriptException {
+    BS bs = ((ScriptEval) this).lookupDefinedValue(name);
+    if (bs != null) {
+      rpn.addXBsTemp(bs);
+      return;
+    }
+    // names of groups (PDB) or atoms (non-PDB), as for lookupIdentifierValue
+    bs = getAtomBits(T.identifier, name);
+    rpn.addXBs(bs == null ? new BS() : bs);
+  }
+
   private BS getComparison(T t, int tokWhat, int tokOp, String strOp,
                            Object data)
       throws ScriptException {
@@ -2338,14 +2425,28 @@ abstract class ScriptExpr extends ScriptParam {
       }
     }
     int nv = 0;
-    Lst<SV> v = (Lst<SV>) parameterExpression(pt, ptMax, key, true, true, -1,
-        false, null, null, isSet && pt == 1);
-    nv = v.size();
-    if (nv == 0)
-      invArg();
-    if (chk || v.get(0).tok == T.nada)
-      return null;
-    SV tv = SV.selectItemVar(SV.copySafely(v.get(nv - 1)));
+    SV tv = null;
+    if (key != null && !settingData && !isThrown && !isExpression
+        && !(isSet && pt == 1)) {
+      // simple numeric expression?
+      ScriptMathCode mc = getMathCode(pt, ptMax);
+      if (mc != null && mc.run(this)) {
+        getToken(mc.ptEnd);
+        tv = mc.getResult();
+        nv = 1;
+      }
+    }
+    Lst<SV> v = null;
+    if (tv == null) {
+      v = (Lst<SV>) parameterExpression(pt, ptMax, key, true, true, -1, false,
+          null, null, isSet && pt == 1);
+      nv = v.size();
+      if (nv == 0)
+        invArg();
+      if (chk || v.get(0).tok == T.nada)
+        return null;
+      tv = SV.selectItemVar(SV.copySafely(v.get(nv - 1)));
+    }
     if (nv > 1) {
       SV sel = (nv > 2 ? v.get(1) : null);
       t = v.get(0);
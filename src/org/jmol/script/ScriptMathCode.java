@@ -0,0 +1,600 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ *
+ * Copyright (C) 2003-2005  Miguel, Jmol Development, www.jmol.org
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.script;
+
+import javajs.util.AU;
+
+/**
+ * <p>
+ * A compact instruction stream for the simplest and most common kind of
+ * expression in a loop: integer, decimal, and boolean arithmetic on numbers
+ * and variables, as in
+ * </p>
+ *
+ * <pre>
+ * for (var i = 1; i &lt;= n; i++) { s += i * 2 - 1; if (s &gt; 1000) { ... } }
+ * </pre>
+ * <p>
+ * A range of a statement's tokens is lowered once, by the same precedence
+ * rules that ScriptMathProcessor uses, into postfix instructions, with any
+ * purely constant subexpression folded. Running it then takes only a variable
+ * lookup by name for each variable and a switch for each operator, with no
+ * tokens, SV stacks, or strings.
+ * </p>
+ * <p>
+ * Only + - * / (unary -), comparisons, AND, OR, NOT, parentheses, and abs,
+ * sqrt, sin, cos, tan, and acos are allowed. Anything else, including a
+ * variable that turns out not to be a number or boolean at run time, makes
+ * run() return false, and the caller then just evaluates the expression in
+ * the usual way. Since nothing here has side effects, that is always safe.
+ * </p>
+ *
+ */
+final class ScriptMathCode {
+
+  // instructions
+
+  private final static int CONST = 0;
+  private final static int VAR = 1;
+  private final static int UNARY = 2;
+  private final static int BINARY = 3;
+
+  // value types
+
+  private final static int INT = 0;
+  private final static int DEC = 1;
+  private final static int BOOL = 2;
+
+  /**
+   * key: the range of the statement this code is for
+   */
+  final int pt, ptMax;
+
+  /**
+   * other ranges of the same statement
+   */
+  ScriptMathCode next;
+
+  /**
+   * false if this range cannot be lowered
+   */
+  boolean isValid;
+
+  /**
+   * index of the last token read, which the caller must leave as iToken
+   */
+  int ptEnd;
+
+  private int[] ops, args;
+  private int nOps;
+  private int depth, maxDepth;
+
+  private int[] cTypes, cInts;
+  private double[] cDecs;
+  private int nConst;
+
+  private String[] names;
+  private int nNames;
+
+  private int[] types, ints;
+  private double[] decs;
+  private int sp;
+
+  ScriptMathCode(T[] st, int slen, int pt, int ptMax) {
+    this.pt = pt;
+    this.ptMax = ptMax;
+    if (pt > 0)
+      isValid = lower(st, slen);
+  }
+
+  /////////////// lowering ////////////////
+
+  /**
+   * Convert the tokens to postfix by ScriptMathProcessor's rules: ( and NOT
+   * and functions are simply pushed; any other operator first operates on all
+   * stacked operators of equal or higher precedence.
+   *
+   * @param st
+   * @param slen
+   * @return true if successful
+   */
+  private boolean lower(T[] st, int slen) {
+    int ptMax = this.ptMax;
+    if (ptMax < pt)
+      ptMax = slen;
+    if (ptMax > slen)
+      return false;
+    ops = new int[16];
+    args = new int[16];
+    cTypes = new int[4];
+    cInts = new int[4];
+    cDecs = new double[4];
+    names = new String[4];
+    int[] opStack = new int[16];
+    int oPt = -1;
+    boolean wasX = false;
+    int i = pt;
+    for (; i < ptMax; i++) {
+      T t = st[i];
+      if (t == null)
+        return false;
+      int tok = t.tok;
+      if (tok == T.semicolon)
+        break;
+      if (oPt + 2 >= opStack.length)
+        opStack = AU.doubleLengthI(opStack);
+      switch (tok) {
+      case T.integer:
+      case T.decimal:
+        double d = (tok == T.integer ? t.intValue : ((Number) t.value)
+            .doubleValue());
+        boolean isNeg = (d < 0 || d == 0 && 1 / d == Double.NEGATIVE_INFINITY);
+        if (wasX) {
+          // x -3 is x - 3, as in ScriptMathProcessor.addXNum
+          if (!isNeg || t instanceof SV)
+            return false;
+          oPt = pushBinary(T.minus, opStack, oPt);
+          if (oPt == Integer.MIN_VALUE)
+            return false;
+          d = -d;
+        }
+        if (tok == T.integer)
+          addConst(INT, (int) d, 0);
+        else
+          addConst(DEC, 0, d);
+        wasX = true;
+        break;
+      case T.on:
+      case T.off:
+        if (wasX)
+          return false;
+        addConst(BOOL, tok == T.on ? 1 : 0, 0);
+        wasX = true;
+        break;
+      case T.identifier:
+        if (wasX || !(t.value instanceof String))
+          return false;
+        String name = ((String) t.value).toLowerCase();
+        if (name.length() == 0 || name.charAt(0) == '_' || name.equals("all")
+            || name.equals("this") || i + 1 < slen && st[i + 1] != null
+            && st[i + 1].tok == T.leftparen)
+          return false;
+        addVar(name);
+        wasX = true;
+        break;
+      case T.abs:
+      case T.sqrt:
+      case T.sin:
+      case T.cos:
+      case T.tan:
+      case T.acos:
+        if (wasX || i + 1 >= ptMax || st[i + 1] == null
+            || st[i + 1].tok != T.leftparen)
+          return false;
+        opStack[++oPt] = tok;
+        break;
+      case T.leftparen:
+      case T.opNot:
+        if (wasX)
+          return false;
+        opStack[++oPt] = tok;
+        break;
+      case T.rightparen:
+        if (!wasX)
+          return false;
+        while (oPt >= 0 && opStack[oPt] != T.leftparen) {
+          emitOp(opStack[oPt--]);
+          if (nOps < 0)
+            return false;
+        }
+        if (oPt < 0)
+          return false;
+        oPt--;
+        if (oPt >= 0 && isFunction(opStack[oPt])) {
+          emitOp(opStack[oPt--]);
+          if (nOps < 0)
+            return false;
+        }
+        break;
+      case T.minus:
+        if (!wasX) {
+          opStack[++oPt] = T.unaryMinus;
+          break;
+        }
+        //$FALL-THROUGH$
+      case T.plus:
+      case T.times:
+      case T.divide:
+      case T.opGT:
+      case T.opGE:
+      case T.opLE:
+      case T.opLT:
+      case T.opEQ:
+      case T.opNE:
+      case T.opAnd:
+      case T.opOr:
+        if (!wasX)
+          return false;
+        oPt = pushBinary(tok, opStack, oPt);
+        if (oPt == Integer.MIN_VALUE)
+          return false;
+        wasX = false;
+        break;
+      default:
+        return false;
+      }
+    }
+    if (!wasX || i == pt)
+      return false;
+    ptEnd = (i < ptMax ? i : ptMax - 1);
+    while (oPt >= 0) {
+      int op = opStack[oPt--];
+      if (op == T.leftparen || isFunction(op))
+        return false;
+      emitOp(op);
+      if (nOps < 0)
+        return false;
+    }
+    if (depth != 1)
+      return false;
+    types = new int[maxDepth + 1];
+    ints = new int[maxDepth + 1];
+    decs = new double[maxDepth + 1];
+    return true;
+  }
+
+  /**
+   * operate on stacked operators of higher or equal precedence, then push this
+   * one
+   *
+   * @param tok
+   * @param opStack
+   * @param oPt
+   * @return new oPt, or Integer.MIN_VALUE if an operator could not be folded
+   */
+  private int pushBinary(int tok, int[] opStack, int oPt) {
+    int prec = T.getPrecedence(tok);
+    while (oPt >= 0 && opStack[oPt] != T.leftparen
+        && !isFunction(opStack[oPt])
+        && T.getPrecedence(opStack[oPt]) >= prec) {
+      emitOp(opStack[oPt--]);
+      if (nOps < 0)
+        return Integer.MIN_VALUE;
+    }
+    opStack[++oPt] = tok;
+    return oPt;
+  }
+
+  private static boolean isFunction(int tok) {
+    switch (tok) {
+    case T.abs:
+    case T.sqrt:
+    case T.sin:
+    case T.cos:
+    case T.tan:
+    case T.acos:
+      return true;
+    }
+    return false;
+  }
+
+  private void addConst(int type, int i, double d) {
+    if (nConst == cTypes.length) {
+      cTypes = AU.doubleLengthI(cTypes);
+      cInts = AU.doubleLengthI(cInts);
+      cDecs = AU.doubleLengthD(cDecs);
+    }
+    cTypes[nConst] = type;
+    cInts[nConst] = i;
+    cDecs[nConst] = d;
+    addOp(CONST, nConst++);
+  }
+
+  private void addVar(String name) {
+    int i = nNames;
+    while (--i >= 0 && !names[i].equals(name)) {
+    }
+    if (i < 0) {
+      if (nNames == names.length)
+        names = (String[]) AU.doubleLength(names);
+      names[i = nNames++] = name;
+    }
+    addOp(VAR, i);
+  }
+
+  private void addOp(int op, int arg) {
+    if (nOps == ops.length) {
+      ops = AU.doubleLengthI(ops);
+      args = AU.doubleLengthI(args);
+    }
+    ops[nOps] = op;
+    args[nOps++] = arg;
+    depth += (op == BINARY ? -1 : op == UNARY ? 0 : 1);
+    if (depth > maxDepth)
+      maxDepth = depth;
+  }
+
+  /**
+   * Add an operator, folding it if its operands are constants. Sets nOps to -1
+   * if constant operands cannot be operated on, as for TRUE + 1, since the
+   * expression would then never be run here.
+   *
+   * @param tok
+   */
+  private void emitOp(int tok) {
+    boolean isUnary = (tok == T.unaryMinus || tok == T.opNot || isFunction(tok));
+    int n = (isUnary ? 1 : 2);
+    if (nOps >= n && ops[nOps - 1] == CONST
+        && (isUnary || ops[nOps - 2] == CONST)) {
+      if (types == null) {
+        types = new int[2];
+        ints = new int[2];
+        decs = new double[2];
+      }
+      sp = -1;
+      for (int i = nOps - n; i < nOps; i++)
+        push(args[i]);
+      if (!(isUnary ? unaryOp(tok) : binaryOp(tok))) {
+        nOps = -1;
+        return;
+      }
+      nOps -= n;
+      nConst -= n;
+      depth -= n;
+      addConst(types[0], ints[0], decs[0]);
+      types = null;
+      return;
+    }
+    addOp(isUnary ? UNARY : BINARY, tok);
+  }
+
+  private void push(int c) {
+    types[++sp] = cTypes[c];
+    ints[sp] = cInts[c];
+    decs[sp] = cDecs[c];
+  }
+
+  /////////////// running ////////////////
+
+  /**
+   * @param e
+   * @return false if a variable was not a number or boolean or the operation
+   *         is not one handled here
+   */
+  boolean run(ScriptExpr e) {
+    sp = -1;
+    for (int i = 0; i < nOps; i++) {
+      int arg = args[i];
+      switch (ops[i]) {
+      case CONST:
+        push(arg);
+        break;
+      case VAR:
+        SV v = e.getMathCodeVariable(names[arg]);
+        if (v == null)
+          return false;
+        sp++;
+        switch (v.tok) {
+        case T.integer:
+          types[sp] = INT;
+          ints[sp] = v.intValue;
+          break;
+        case T.decimal:
+          types[sp] = DEC;
+          decs[sp] = ((Number) v.value).doubleValue();
+          break;
+        case T.on:
+        case T.off:
+          types[sp] = BOOL;
+          ints[sp] = (v.tok == T.on ? 1 : 0);
+          break;
+        default:
+          return false;
+        }
+        break;
+      case UNARY:
+        if (!unaryOp(arg))
+          return false;
+        break;
+      case BINARY:
+        if (!binaryOp(arg))
+          return false;
+        break;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the result of run() as a new variable
+   */
+  SV getResult() {
+    switch (types[0]) {
+    case INT:
+      return SV.newI(ints[0]);
+    case DEC:
+      return SV.newD(decs[0]);
+    default:
+      return SV.getBoolean(ints[0] == 1);
+    }
+  }
+
+  /**
+   * @return the result of run() as SV.asBoolean() would give it
+   */
+  boolean getBoolean() {
+    return asBoolean(0);
+  }
+
+  private boolean asBoolean(int i) {
+    return (types[i] == DEC ? decs[i] != 0 : ints[i] != 0);
+  }
+
+  private double asDouble(int i) {
+    return (types[i] == DEC ? decs[i] : ints[i]);
+  }
+
+  private void setInt(int i, int x) {
+    types[i] = INT;
+    ints[i] = x;
+  }
+
+  private void setDec(int i, double x) {
+    types[i] = DEC;
+    decs[i] = x;
+  }
+
+  private void setBool(int i, boolean b) {
+    types[i] = BOOL;
+    ints[i] = (b ? 1 : 0);
+  }
+
+  /**
+   * the same as ScriptMathProcessor.operate() for numbers and booleans
+   *
+   * @param tok
+   * @return false if not handled here
+   */
+  private boolean unaryOp(int tok) {
+    int i = sp;
+    int type = types[i];
+    if (tok == T.opNot) {
+      setBool(i, !asBoolean(i));
+      return true;
+    }
+    if (type == BOOL)
+      return false;
+    double x;
+    switch (tok) {
+    case T.unaryMinus:
+      if (type == INT)
+        ints[i] = -ints[i];
+      else
+        decs[i] = -decs[i];
+      return true;
+    case T.abs:
+      if (type == INT)
+        ints[i] = Math.abs(ints[i]);
+      else
+        decs[i] = Math.abs(decs[i]);
+      return true;
+    case T.sqrt:
+      x = Math.sqrt(asDouble(i));
+      break;
+    case T.sin:
+      x = Math.sin(asDouble(i) * Math.PI / 180);
+      break;
+    case T.cos:
+      x = Math.cos(asDouble(i) * Math.PI / 180);
+      break;
+    case T.tan:
+      x = Math.tan(asDouble(i) * Math.PI / 180);
+      break;
+    case T.acos:
+      x = Math.acos(asDouble(i)) * 180 / Math.PI;
+      break;
+    default:
+      return false;
+    }
+    setDec(i, x);
+    return true;
+  }
+
+  /**
+   * the same as ScriptMathProcessor.binaryOp() for numbers and booleans
+   *
+   * @param tok
+   * @return false if not handled here
+   */
+  private boolean binaryOp(int tok) {
+    int i = --sp;
+    int j = i + 1;
+    switch (tok) {
+    case T.opAnd:
+      setBool(i, asBoolean(i) && asBoolean(j));
+      return true;
+    case T.opOr:
+      setBool(i, asBoolean(i) || asBoolean(j));
+      return true;
+    }
+    int t1 = types[i];
+    int t2 = types[j];
+    if (t1 == BOOL || t2 == BOOL)
+      return false;
+    boolean isInt = (t1 == INT && t2 == INT);
+    switch (tok) {
+    case T.plus:
+      if (isInt)
+        ints[i] += ints[j];
+      else
+        setDec(i, asDouble(i) + asDouble(j));
+      return true;
+    case T.minus:
+      if (isInt)
+        ints[i] -= ints[j];
+      else
+        setDec(i, asDouble(i) - asDouble(j));
+      return true;
+    case T.times:
+      if (isInt)
+        ints[i] *= ints[j];
+      else
+        setDec(i, asDouble(i) * asDouble(j));
+      return true;
+    case T.divide:
+      if (isInt && ints[j] != 0)
+        ints[i] /= ints[j];
+      else
+        setDec(i, asDouble(i) / asDouble(j));
+      return true;
+    case T.opGT:
+      setBool(i, isInt ? ints[i] > ints[j] : asDouble(i) > asDouble(j));
+      return true;
+    case T.opGE:
+      setBool(i, isInt ? ints[i] >= ints[j] : asDouble(i) >= asDouble(j));
+      return true;
+    case T.opLE:
+      setBool(i, isInt ? ints[i] <= ints[j] : asDouble(i) <= asDouble(j));
+      return true;
+    case T.opLT:
+      setBool(i, isInt ? ints[i] < ints[j] : asDouble(i) < asDouble(j));
+      return true;
+    case T.opEQ:
+    case T.opNE:
+      boolean isEqual;
+      if (isInt) {
+        isEqual = (ints[i] == ints[j]);
+      } else {
+        double a = asDouble(i);
+        double b = asDouble(j);
+        // SV.areEqual depends upon which NaN this is
+        if (Double.isNaN(a) || Double.isNaN(b))
+          return false;
+        isEqual = (Math.abs(a - b) < 1e-15);
+      }
+      setBool(i, isEqual == (tok == T.opEQ));
+      return true;
+    }
+    return false;
+  }
+
+}
@@ -94,6 +94,23 @@ public class ScriptMathProcessor {
   private boolean allowUnderflow;
   private boolean isAssignment;
 
+  /**
+   * xTemp[i] is true when xStack[i] holds a bit set created during this
+   * evaluation and referenced nowhere else, so that an operator may modify it
+   * in place rather than copy it
+   */
+  private boolean[] xTemp = new boolean[8];
+
+  /**
+   * the operands of the current operator that are such temporaries, if any
+   */
+  private SV tempX1, tempX2;
+
+  /**
+   * all atoms, for NOT; kept from one expression to the next
+   */
+  private BS bsAll;
+
   /**
    * 
    * @param eval
@@ -112,6 +129,43 @@ public class ScriptMathProcessor {
   ScriptMathProcessor(ScriptExpr eval, boolean isSpecialAssignment, boolean isArrayItem,
       boolean asVector, boolean asBitSet, boolean allowUnderflow, String key) {
     this.eval = eval;
+    set(isSpecialAssignment, isArrayItem, asVector, asBitSet, allowUnderflow, key);
+  }
+
+  /**
+   * Prepare a used processor for a new expression, as though new. This allows
+   * ScriptExpr to keep a few processors rather than create one (and its
+   * stacks) for every expression evaluated.
+   * 
+   * @param isSpecialAssignment
+   * @param isArrayItem
+   * @param asVector
+   * @param asBitSet
+   * @param allowUnderflow
+   * @param key
+   * @return this
+   */
+  ScriptMathProcessor reset(boolean isSpecialAssignment, boolean isArrayItem,
+                            boolean asVector, boolean asBitSet,
+                            boolean allowUnderflow, String key) {
+    for (int i = xStack.length; --i >= 0;)
+      xStack[i] = null;
+    for (int i = oStack.length; --i >= 0;)
+      oStack[i] = null;
+    oPt = xPt = ifPt = -1;
+    parenCount = squareCount = braceCount = equalCount = ptid = 0;
+    ptx = pto = Integer.MAX_VALUE;
+    haveSpaceBeforeSquare = skipping = false;
+    doSelections = true;
+    lastAssignedString = tempX1 = tempX2 = null;
+    set(isSpecialAssignment, isArrayItem, asVector, asBitSet, allowUnderflow,
+        key);
+    return this;
+  }
+
+  private void set(boolean isSpecialAssignment, boolean isArrayItem,
+                   boolean asVector, boolean asBitSet, boolean allowUnderflow,
+                   String key) {
     this.isSpecialAssignment = assignLeft = isSpecialAssignment;
     this.isAssignment = (isSpecialAssignment || key != null);
     this.vwr = eval.vwr;
@@ -184,9 +238,12 @@ public class ScriptMathProcessor {
        //System.out.println("Error adding comma");
       }      
     }
-    if (++xPt == xStack.length)
+    if (++xPt == xStack.length) {
       xStack = (SV[]) AU.doubleLength(xStack);
+      xTemp = AU.doubleLengthBool(xTemp);
+    }
     xStack[xPt] = x;
+    xTemp[xPt] = false;
     ptx = ++ptid;
     if (debugHigh) {
       Logger.debug("\nputx= " + x + " ptx=" + ptid);
@@ -284,6 +341,33 @@ public class ScriptMathProcessor {
     return wasX = true;
   }
 
+  /**
+   * Add a bit set that the caller has just created and will not otherwise
+   * reference, so that and/or/not can work on it in place.
+   * 
+   * @param bs
+   * @return true
+   */
+  boolean addXBsTemp(BS bs) {
+    return addXTemp(SV.newV(T.bitset, bs));
+  }
+
+  private boolean addXTemp(SV x) {
+    putX(x);
+    if (!skipping)
+      xTemp[xPt] = true;
+    return wasX = true;
+  }
+
+  /**
+   * @return true if the top of the stack is a temporary with no pending [n]
+   *         item selection
+   */
+  private boolean isTempX() {
+    return (xPt >= 0 && xTemp[xPt]
+        && xStack[xPt].intValue == Integer.MAX_VALUE);
+  }
+
   public boolean addXPt(P3d pt) {
     putX(SV.newV(T.point3f, pt));
     return wasX = true;
@@ -783,6 +867,7 @@ public class ScriptMathProcessor {
         // also x[1][2][3] = ....
         // prior to 12.2/3.18, x[1]["id"] was misread as x[1][0]
         xStack[xPt] = var = (SV) SV.selectItemTok(var, Integer.MIN_VALUE);
+        xTemp[xPt] = false;
       }
     if (assignLeft && var.tok != T.string)
       lastAssignedString = null;
@@ -809,6 +894,7 @@ public class ScriptMathProcessor {
       if (doSelections || var.tok == T.varray
           && var.intValue == Integer.MAX_VALUE) {
         xStack[xPt] = (SV) SV.selectItemTok(var, var1.asInt());
+        xTemp[xPt] = false;
         if (assignLeft && var.tok == T.string && squareCount == 1)
           lastAssignedString = var;
       } else {
@@ -836,7 +922,8 @@ public class ScriptMathProcessor {
   public SV getX() throws ScriptException {
     if (xPt < 0)
       eval.error(ScriptError.ERROR_endOfStatementUnexpected);
-    SV v = SV.selectItemVar(xStack[xPt]);
+    // a temporary needs no protective copy
+    SV v = (isTempX() ? xStack[xPt] : SV.selectItemVar(xStack[xPt]));
     xStack[xPt--] = null;
     wasX = false;
     return v;
@@ -895,6 +982,7 @@ public class ScriptMathProcessor {
     M3d m;
     M4d m4;
     SV x1;
+    tempX1 = tempX2 = null;
     if (debugHigh) {
       dumpStacks("operate: " + op);
     }
@@ -924,7 +1012,10 @@ public class ScriptMathProcessor {
       //$FALL-THROUGH$
     default:
       //
+      boolean isTemp = isTempX();
       x2 = getX();
+      if (isTemp)
+        tempX2 = x2;
       break;
     }
     if (x2 == T.tokenArrayOpen)
@@ -975,7 +1066,7 @@ public class ScriptMathProcessor {
         m4.transpose();
         return addXM4(m4);
       case T.bitset:
-        return addXBs(BSUtil.copyInvert((BS) x2.value,
+        return addXBsTemp(BSUtil.copyInvert((BS) x2.value,
             (x2.value instanceof BondSet ? vwr.ms.bondCount : vwr.ms.ac)));
       }
       return addXDouble(-x2.asDouble());
@@ -993,6 +1084,16 @@ public class ScriptMathProcessor {
         return addXM4(M4d.newM4((M4d) x2.value).invert());
       case T.bitset:
         boolean isBond = x2.value instanceof BondSet;
+        if (x2 == tempX2 && !isBond && ((BS) x2.value).size() >= vwr.ms.ac) {
+          // invert in place only if that will not reallocate
+          BS bs = (BS) x2.value;
+          int ac = vwr.ms.ac;
+          if (bs.length() > ac)
+            bs.clearBits(ac, bs.length());
+          bs.xor(getAllAtoms(ac));
+          BSUtil.andNot(bs, vwr.slm.bsDeleted);
+          return addXTemp(x2);
+        }
         BS bs = BSUtil.copyInvert((BS) x2.value,
             (isBond ? vwr.ms.bondCount : vwr.ms.ac));
         if (isBond) {
@@ -1000,7 +1101,7 @@ public class ScriptMathProcessor {
         } else {
           BSUtil.andNot(bs, vwr.slm.bsDeleted);
         }
-        return addXBs(bs);
+        return addXBsTemp(bs);
       default:
         return addXBool(!x2.asBoolean());
       }
@@ -1009,14 +1110,67 @@ public class ScriptMathProcessor {
     }
 
     // binary:
+    boolean isTemp = isTempX();
     x1 = getX();
     if (chk) {
       if (op == T.tokenAndFALSE || op == T.tokenOrTRUE)
         chk = false;
       return addX(SV.newT(x1));
     }
+    if (isTemp)
+      tempX1 = x1;
+    boolean ok = binaryOp(op, x1, x2);
+    tempX1 = tempX2 = null;
+    return ok;
+  }
 
-    return binaryOp(op, x1, x2);
+  /**
+   * @param ac
+   * @return a bit set of all atoms, reused for NOT
+   */
+  private BS getAllAtoms(int ac) {
+    if (bsAll == null || bsAll.length() != ac || bsAll.cardinality() != ac)
+      bsAll = BSUtil.newBitSet2(0, ac);
+    return bsAll;
+  }
+
+  /**
+   * For and, or, and xor of two bit sets, modify whichever operand is a
+   * temporary in place, if either is. The result must be of the same class as
+   * x1 (BS or BondSet).
+   * 
+   * @param tok
+   * @param x1
+   * @param x2
+   * @return the modified temporary, or null if a new bit set is needed
+   */
+  private SV bitsetOpInPlace(int tok, SV x1, SV x2) {
+    SV x;
+    BS bs;
+    if (x1 == tempX1) {
+      x = x1;
+      bs = (BS) x2.value;
+    } else if (x2 == tempX2 && !(x1.value instanceof BondSet)
+        && !(x2.value instanceof BondSet)) {
+      x = x2;
+      bs = (BS) x1.value;
+    } else {
+      return null;
+    }
+    BS bsx = (BS) x.value;
+    switch (tok) {
+    case T.opAND:
+    case T.opAnd:
+      bsx.and(bs);
+      break;
+    case T.opOr:
+      bsx.or(bs);
+      break;
+    case T.opXor:
+      bsx.xor(bs);
+      break;
+    }
+    return x;
   }
 
   public boolean propOp(T op, SV x2) throws ScriptException {
@@ -1131,9 +1285,12 @@ public class ScriptMathProcessor {
           int x = x2.asInt();
           return (addXBool(x < 0 ? false : bs.get(x)));
         case T.bitset:
+          SV xt = bitsetOpInPlace(op.tok, x1, x2);
+          if (xt != null)
+            return addXTemp(xt);
           bs = BSUtil.copy(bs);
           bs.and((BS) x2.value);
-          return addXBs(x1.value instanceof BondSet ? BondSet.newBS(bs) : bs);
+          return addXBsTemp(x1.value instanceof BondSet ? BondSet.newBS(bs) : bs);
         }
         break;
       }
@@ -1144,6 +1301,9 @@ public class ScriptMathProcessor {
         BS bs = null;
         switch (x2.tok) {
         case T.bitset:
+          SV xt = bitsetOpInPlace(op.tok, x1, x2);
+          if (xt != null)
+            return addXTemp(xt);
           bs = BSUtil.copy((BS) x1.value);
           bs.or((BS) x2.value);
           break;
@@ -1166,7 +1326,7 @@ public class ScriptMathProcessor {
         }
         if (bs == null) 
        	  break;
-        return addXBs(x1.value instanceof BondSet ? BondSet.newBS(bs) : bs);
+        return addXBsTemp(x1.value instanceof BondSet ? BondSet.newBS(bs) : bs);
       case T.varray:
         return addX(SV.concatList(x1, x2, false));
       case T.matrix3f:
@@ -1178,9 +1338,12 @@ public class ScriptMathProcessor {
       return addXBool(x1.asBoolean() || x2.asBoolean());
     case T.opXor:
       if (x1.tok == T.bitset && x2.tok == T.bitset) {
+        SV xt = bitsetOpInPlace(op.tok, x1, x2);
+        if (xt != null)
+          return addXTemp(xt);
         BS bs = BSUtil.copy((BS) x1.value);
         bs.xor((BS) x2.value);
-        return addXBs(x1.value instanceof BondSet ? BondSet.newBS(bs) : bs);
+        return addXBsTemp(x1.value instanceof BondSet ? BondSet.newBS(bs) : bs);
       }
       boolean a = x1.asBoolean();
       boolean b = x2.asBoolean();
@@ -1188,7 +1351,11 @@ public class ScriptMathProcessor {
     case T.opToggle:
       if (x1.tok != T.bitset || x2.tok != T.bitset)
         return false;
-      return addXBs(
+      if (x1 == tempX1) {
+        BSUtil.toggleInPlace((BS) x1.value, (BS) x2.value);
+        return addXTemp(x1);
+      }
+      return addXBsTemp(
           BSUtil.toggleInPlace(BSUtil.copy((BS) x1.value), (BS) x2.value));
     case T.opLE:
       return addXBool(x1.tok == T.integer && x2.tok == T.integer
@@ -2979,6 +2979,7 @@ public class CmdExt extends ScriptExt {
     boolean groupOnly = false;
     Minimizer minimizer = vwr.getMinimizer(false);
     double range = 0;
+    boolean isModels = false;
 
     // may be null
     for (int i = (isModelkit ? 2 : 1); i < slen; i++) {
@@ -2986,9 +2987,28 @@ public class CmdExt extends ScriptExt {
       case T.criterion:
         crit = doubleParameter(++i);
         continue;
+      case T.cutoff:
+        double cutoff = doubleParameter(++i);
+        if (!chk)
+          vwr.getMinimizer(true).setProperty("cutoff", Double.valueOf(cutoff));
+        continue;
+      case T.identifier:
+        // MINIMIZE METHOD SD|CG|LBFGS
+        if (!paramAsStr(i).equalsIgnoreCase("method"))
+          invArg();
+        String method = paramAsStr(++i);
+        if (Minimizer.getMethod(method) < 0)
+          invArg();
+        if (!chk)
+          vwr.getMinimizer(true).setProperty("method", method);
+        continue;
       case T.range:
         range = doubleParameter(++i);
         continue;
+      case T.model:
+        // MINIMIZE MODELS: each model on its own
+        isModels = true;
+        continue;
       case T.energy:
         steps = 0;
         continue;
@@ -3091,6 +3111,18 @@ public class CmdExt extends ScriptExt {
     }
     if (isModelkit && (addHydrogen || selectedOnly || groupOnly))
       invArg();
+    if (isModels) {
+      if (isModelkit || addHydrogen || groupOnly)
+        invArg();
+      if (!chk)
+        try {
+          vwr.minimizeModels(e, steps, crit, bsSelected);
+        } catch (Exception e1) {
+          // actually an async exception
+          throw new ScriptInterruption(e, "minimize", 1);
+        }
+      return;
+    }
     if (!chk)
       try {
         vwr.minimize(e, steps, crit, bsSelected, bsFixed, null, range,
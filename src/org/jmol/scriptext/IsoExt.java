@@ -2533,6 +2533,12 @@ public class IsoExt extends ScriptExt {
           sbCommand.append(" " + calcType);
           addShapeProperty(propertyList, "mepCalcType",
               Integer.valueOf(calcType));
+          if (tokAt(i + 1) == T.decimal) {
+            double accuracy = floatParameter(++i);
+            sbCommand.append(" " + accuracy);
+            addShapeProperty(propertyList, "mepAccuracy",
+                Double.valueOf(accuracy));
+          }
         }
         if (tokAt(i + 1) == T.string) {
           fname = stringParameter(++i);
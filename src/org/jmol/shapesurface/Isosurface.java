@@ -163,6 +163,7 @@ public class Isosurface extends MeshCollection implements MeshDataServer {
   protected void newSg() {
     sg = new SurfaceGenerator(vwr, this, null, jvxlData = new JvxlData());
     sg.params.showTiming = vwr.getBoolean(T.showtiming);
+    sg.params.multiProcessor = vwr.getBoolean(T.multiprocessor);
     sg.version = "Jmol " + Viewer.getJmolVersion();
   }
   
@@ -684,6 +685,7 @@ public class Isosurface extends MeshCollection implements MeshDataServer {
         sg.setProp("select", bs, null);
       initializeIsosurface();
       sg.params.modelIndex = (isFixed ? -1 : modelIndex);
+      sg.params.multiProcessor = vwr.getBoolean(T.multiprocessor);
       return;
     }
 
@@ -1605,6 +1607,13 @@ public class Isosurface extends MeshCollection implements MeshDataServer {
       mesh.slabOptions = meshData.slabOptions;
       mesh.colorsExplicit = meshData.colorsExplicit;
       return;
+    case MeshData.MODE_GET_MAPPED_VALUES:
+      if (!mesh.getMappedValues(meshData))
+        meshData.mapKey = null;
+      return;
+    case MeshData.MODE_PUT_MAPPED_VALUES:
+      mesh.putMappedValues(meshData);
+      return;
     }
   }
 
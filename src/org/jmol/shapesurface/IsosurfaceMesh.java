@@ -28,6 +28,7 @@ import javajs.util.AU;
 import javajs.util.Lst;
 import javajs.util.SB;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 
 import java.util.Map;
@@ -86,6 +87,14 @@ public class IsosurfaceMesh extends Mesh {
   Map<String, BS> pymolVertexColorMap;
   BS bsVdw;
 
+  /**
+   * vertex values and source atoms from earlier mappings of this vertex set,
+   * keyed by MeshData.mapKey
+   */
+  private Map<String, Object[]> mappedValues;
+  private T3d[] mappedVertices;
+  private final static int MAX_MAPPED_VALUES = 4;
+
   
   @Override
   public double getResolution() {
@@ -130,6 +139,40 @@ public class IsosurfaceMesh extends Mesh {
     vertexIncrement = 1;
     vertexSets = null;
     vvs = null;
+    mappedValues = null;
+    mappedVertices = null;
+  }
+
+  /**
+   * Retrieve the vertex values for a mapping that has already been done on
+   * this set of vertices.
+   * 
+   * @param md
+   *        mesh data already filled using MODE_GET_VERTICES
+   * @return true if md.vvs (and md.vertexSource) have been filled
+   */
+  boolean getMappedValues(MeshData md) {
+    Object[] data = (mappedValues == null || mappedVertices != vs ? null
+        : mappedValues.get(md.mapKey));
+    if (data == null || ((Integer) data[0]).intValue() != vc
+        || !Arrays.equals((double[]) data[1], md.mapCheck))
+      return false;
+    int i0 = mergeVertexCount0;
+    System.arraycopy(data[2], i0, md.vvs, i0, vc - i0);
+    if (data[3] != null && md.vertexSource != null)
+      System.arraycopy(data[3], i0, md.vertexSource, i0, vc - i0);
+    return true;
+  }
+
+  void putMappedValues(MeshData md) {
+    if (mappedValues == null || mappedVertices != vs
+        || mappedValues.size() >= MAX_MAPPED_VALUES) {
+      mappedValues = new Hashtable<String, Object[]>();
+      mappedVertices = vs;
+    }
+    mappedValues.put(md.mapKey, new Object[] { Integer.valueOf(vc),
+        md.mapCheck, AU.arrayCopyD(md.vvs, vc),
+        md.vertexSource == null ? null : AU.arrayCopyI(md.vertexSource, vc) });
   }
 
   void allocVertexColixes() {
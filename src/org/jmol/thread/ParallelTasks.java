@@ -0,0 +1,214 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ *
+ * Copyright (C) 2003-2006  Miguel, Jmol Development, www.jmol.org
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.thread;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.jmol.util.Logger;
+import org.jmol.viewer.Viewer;
+
+/**
+ * A minimal data-parallel loop for Java: the range [0, n) is split into
+ * contiguous blocks, and each block is handed to a shared daemon pool.
+ *
+ * Callers always get the same block boundaries for a given n and task count,
+ * so per-task accumulators can be merged in block order to give results that
+ * are independent of thread scheduling.
+ *
+ * JavaScript has Viewer.nProcessors == 1, so there the loop is always run
+ * serially on the calling thread and no java.util.concurrent class is ever
+ * touched. The same is true for a call made from within a pool thread, which
+ * avoids any chance of deadlock from nested parallel loops.
+ *
+ * Each caller passes its own viewer's SET multiProcessor setting, so turning
+ * it off in one viewer does not affect any other viewer in the same JVM.
+ *
+ */
+public class ParallelTasks {
+
+  public interface Block {
+    /**
+     * @param task
+     *        block index, 0 to nTasks - 1
+     * @param i0
+     *        first index, inclusive
+     * @param i1
+     *        last index, exclusive
+     */
+    void run(int task, int i0, int i1);
+  }
+
+  /**
+   * false only if the pool could not be created
+   */
+  private static boolean available = true;
+
+  private static ExecutorService pool;
+
+  private static ThreadLocal<Boolean> inPool;
+
+  /**
+   * @param multiProcessor
+   *        the calling viewer's SET multiProcessor setting
+   * @param n
+   *        number of items
+   * @param minPerTask
+   *        smallest block worth handing to another thread
+   * @return number of blocks that run(...) will use for n items
+   */
+  public static int getTaskCount(boolean multiProcessor, int n,
+                                 int minPerTask) {
+    if (!multiProcessor || !available || Viewer.nProcessors < 2 || n < 2 * minPerTask
+        || isPoolThread())
+      return 1;
+    return Math.min(Viewer.nProcessors, n / Math.max(1, minPerTask));
+  }
+
+  /**
+   * Run body over [0, n) using up to getTaskCount(multiProcessor, n,
+   * minPerTask) blocks.
+   *
+   * @param multiProcessor
+   * @param n
+   * @param minPerTask
+   * @param body
+   * @return the number of blocks used
+   */
+  public static int run(boolean multiProcessor, int n, int minPerTask,
+                        Block body) {
+    return runTasks(n, getTaskCount(multiProcessor, n, minPerTask), body);
+  }
+
+  /**
+   * Run body over [0, n) using exactly nTasks blocks (or fewer if n is
+   * smaller).
+   *
+   * @param n
+   * @param nTasks
+   * @param body
+   * @return number of blocks used
+   */
+  public static int runTasks(int n, int nTasks, Block body) {
+    if (nTasks > n)
+      nTasks = n;
+    if (nTasks <= 1) {
+      if (n > 0)
+        body.run(0, 0, n);
+      return 1;
+    }
+    runPooled(n, nTasks, body);
+    return nTasks;
+  }
+
+  public static int getBlockStart(int n, int nTasks, int task) {
+    return (int) ((long) n * task / nTasks);
+  }
+
+  private static boolean isPoolThread() {
+    return (inPool != null && inPool.get() != null);
+  }
+
+  /**
+   * @j2sIgnore
+   *
+   * @param n
+   * @param nTasks
+   * @param body
+   */
+  private static void runPooled(int n, int nTasks, final Block body) {
+    ExecutorService exec = getPool();
+    if (exec == null) {
+      body.run(0, 0, n);
+      return;
+    }
+    Future<?>[] futures = new Future<?>[nTasks];
+    for (int t = 1; t < nTasks; t++) {
+      final int task = t;
+      final int i0 = getBlockStart(n, nTasks, t);
+      final int i1 = getBlockStart(n, nTasks, t + 1);
+      futures[t] = exec.submit(new Runnable() {
+        @Override
+        public void run() {
+          inPool.set(Boolean.TRUE);
+          body.run(task, i0, i1);
+        }
+      });
+    }
+    Throwable err = null;
+    try {
+      // the calling thread does block 0 itself
+      body.run(0, 0, getBlockStart(n, nTasks, 1));
+    } catch (Throwable e) {
+      err = e;
+    }
+    for (int t = 1; t < nTasks; t++) {
+      try {
+        futures[t].get();
+      } catch (java.util.concurrent.ExecutionException e) {
+        if (err == null)
+          err = e.getCause();
+      } catch (InterruptedException e) {
+        if (err == null)
+          err = e;
+      }
+    }
+    if (err == null)
+      return;
+    if (err instanceof RuntimeException)
+      throw (RuntimeException) err;
+    if (err instanceof Error)
+      throw (Error) err;
+    throw new RuntimeException(err);
+  }
+
+  /**
+   * @j2sIgnore
+   *
+   * @return a shared pool of daemon threads, one per processor
+   */
+  private synchronized static ExecutorService getPool() {
+    if (pool == null) {
+      try {
+        inPool = new ThreadLocal<Boolean>();
+        pool = Executors.newFixedThreadPool(Viewer.nProcessors,
+            new ThreadFactory() {
+              private int index;
+
+              @Override
+              public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "JmolParallel_" + (++index));
+                t.setDaemon(true);
+                return t;
+              }
+            });
+      } catch (Throwable e) {
+        Logger.error("parallel processing is not available");
+        available = false;
+      }
+    }
+    return pool;
+  }
+
+}
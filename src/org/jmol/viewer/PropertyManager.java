@@ -173,6 +173,7 @@ public class PropertyManager implements JmolPropertyManager {
     "CIFInfo"        , "<filename>", "",
     "modelkitInfo", "<key>","data",
     "unitcellInfo"   , "", "",
+    "scriptCacheInfo", "", "",
   };
 
   private final static int PROP_APPLET_INFO = 0;
@@ -229,7 +230,8 @@ public class PropertyManager implements JmolPropertyManager {
   private final static int PROP_CIF_INFO = 45;
   private final static int PROP_MODELKIT_INFO = 46;
   private final static int PROP_UNITCELL_INFO = 47;
-  private final static int PROP_COUNT = 48;
+  private final static int PROP_SCRIPT_CACHE_INFO = 48;
+  private final static int PROP_COUNT = 49;
 
   //// static methods used by Eval and Viewer ////
 
@@ -912,6 +914,8 @@ public class PropertyManager implements JmolPropertyManager {
       return getAllPolymerInfo(vwr.getAtomBitSet(myParam));
     case PROP_SCRIPT_QUEUE_INFO:
       return vwr.getScriptQueueInfo();
+    case PROP_SCRIPT_CACHE_INFO:
+      return vwr.getScriptCacheInfo();
     case PROP_SHAPE_INFO:
       return getShapeInfo();
     case PROP_STATE_INFO:
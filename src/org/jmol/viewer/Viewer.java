@@ -96,6 +96,7 @@ import org.jmol.modelset.StateScript;
 import org.jmol.modelsetbio.BioResolver;
 import org.jmol.ocl.OpenChemLib;
 import org.jmol.script.SV;
+import org.jmol.script.ScriptCompiler;
 import org.jmol.script.ScriptContext;
 import org.jmol.script.ScriptEval;
 import org.jmol.script.T;
@@ -3757,6 +3758,7 @@ public class Viewer extends JmolViewer
       chainMap.clear();
       chainList.clear();
       chainCaseSpecified = false;
+      compileStateID++;
       //cm.clear();
       definedAtomSets.clear();
       lastData = null;
@@ -6024,6 +6026,8 @@ public class Viewer extends JmolViewer
     switch (tok) {
     case T.useminimizationthread:
       return g.useMinimizationThread;
+    case T.multiprocessor:
+      return g.multiProcessor;
     case T.nbocharges:
       return g.nboCharges;
     case T.hiddenlinesdashed:
@@ -9470,6 +9474,13 @@ public class Viewer extends JmolViewer
 
   Map<String, JmolScriptFunction> localFunctions;
 
+  /**
+   * changed whenever the set of function names or chain IDs changes; compiled
+   * scripts depend upon both and are cached by ScriptCompiler only for a given
+   * value of this ID
+   */
+  public int compileStateID;
+
   public Map<String, JmolScriptFunction> getFunctions(boolean isStatic) {
     return (isStatic ? staticFunctions : localFunctions);
   }
@@ -9481,6 +9492,7 @@ public class Viewer extends JmolViewer
       return;
     staticFunctions.remove(name);
     localFunctions.remove(name);
+    compileStateID++;
   }
 
   public JmolScriptFunction getFunction(String name) {
@@ -9503,12 +9515,14 @@ public class Viewer extends JmolViewer
   public void clearFunctions() {
     staticFunctions.clear();
     localFunctions.clear();
+    compileStateID++;
   }
 
   public void addFunction(JmolScriptFunction function) {
     String name = function.getName();
-    (isStaticFunction(name) ? staticFunctions : localFunctions).put(name,
-        function);
+    if ((isStaticFunction(name) ? staticFunctions : localFunctions).put(name,
+        function) == null)
+      compileStateID++;
   }
 
   public String getFunctionCalls(String selectedFunction) {
@@ -9591,6 +9605,11 @@ public class Viewer extends JmolViewer
       minimizer.setProperty("clear", null);
   }
 
+  public Map<String, Object> getScriptCacheInfo() {
+    return (compiler == null ? new Hashtable<String, Object>()
+        : ((ScriptCompiler) compiler).getCacheInfo());
+  }
+
   public String getMinimizationInfo() {
     return (minimizer == null ? "" : (String) minimizer.getProperty("log", 0));
   }
@@ -9800,6 +9819,31 @@ public class Viewer extends JmolViewer
     }
   }
 
+  /**
+   * MINIMIZE MODELS: minimize each model independently, in parallel when
+   * possible
+   * 
+   * @param eval
+   * @param steps
+   * @param crit
+   * @param bsSelected
+   *        or null for all atoms in the current frame set
+   */
+  public void minimizeModels(JmolScriptEvaluator eval, int steps, double crit,
+                             BS bsSelected) throws Exception {
+    if (bsSelected == null)
+      bsSelected = getFrameAtoms();
+    if (bsSelected.isEmpty())
+      return;
+    try {
+      getMinimizer(true).minimizeModels(steps, crit, bsSelected, g.forceField);
+    } catch (JmolAsyncException e) {
+      // thrown if a minimization forcefield resource has not been loaded yet and all loading is asynchronous
+      if (eval != null)
+        eval.loadFileResourceAsync(e.getFileName());
+    }
+  }
+
   private void setHydrogens(BS bsAtoms) {
     int[] nTotal = new int[1];
     P3d[][] hatoms = ms.calculateHydrogens(bsAtoms, nTotal, null,
@@ -10566,7 +10610,10 @@ public class Viewer extends JmolViewer
       if (iboxed != null)
         return iboxed.intValue();
       //this will force chainCaseSensitive when it is necessary
-      chainCaseSpecified |= isAssign;
+      if (isAssign && !chainCaseSpecified) {
+        chainCaseSpecified = true;
+        compileStateID++;
+      }
       chainList.addLast(id);
     }
     // if select :a and there is NO chain "a" in the structure,
@@ -10577,6 +10624,7 @@ public class Viewer extends JmolViewer
     iboxed = Integer.valueOf(i);
     chainMap.put(iboxed, id);
     chainMap.put(id, iboxed);
+    compileStateID++;
     return i;
   }
 